@@ -0,0 +1,109 @@
+package com.demo.identity_service.service;
+
+import com.demo.identity_service.configuration.CustomJWTDecoder;
+import com.demo.identity_service.configuration.JwtKeyRing;
+import com.demo.identity_service.dto.projection.UserAuthorities;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.security.crypto.bcrypt.BCryptPasswordEncoder;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.ArrayList;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Dựng các service của luồng xác thực như trong Spring context, nhưng không cần DB
+ */
+final class AuthFixture {
+    static final String SIGNER_KEY = "uaDHV/qC/EYd56gjiFO3kbcEL8G/k+NKC4eBnXq4QhWeiroqHNJXgnmDsBlEVDPB";
+    static final long VALID_DURATION = 3600;
+    static final long REFRESHABLE_DURATION = 7200;
+
+    final AuthMetrics authMetrics;
+    final JwtKeyRing jwtKeyRing;
+    final RevokedTokenFilter revokedTokenFilter;
+    final InvalidatedTokenWriter invalidatedTokenWriter;
+    final TokenEpochStore tokenEpochStore;
+    final TokenVerifier tokenVerifier;
+    final RoleScopeCache roleScopeCache;
+    final AuthenticationService authenticationService;
+
+    // Dữ liệu của RoleRepository giả lập, được thêm bởi user()
+    final Map<String, Set<String>> permissionsByRole = new ConcurrentHashMap<>();
+
+    /**
+     * @param revokedIds số jti đã bị thu hồi nạp sẵn vào Bloom filter
+     */
+    AuthFixture(int revokedIds){
+        Set<String> revoked = new LinkedHashSet<>();
+        for(int i = 0; i < revokedIds; i++) revoked.add(UUID.randomUUID().toString());
+
+        var meterRegistry = new SimpleMeterRegistry();
+        authMetrics = new AuthMetrics(meterRegistry);
+        var invalidatedTokenRepository = FakeRepositories.invalidatedTokenRepository(revoked);
+
+        jwtKeyRing = new JwtKeyRing(SIGNER_KEY, List.of(), REFRESHABLE_DURATION, "", "HS512", "");
+        // Không có sync định kỳ trong benchmark: max-staleness vô hạn để filter luôn được dùng
+        revokedTokenFilter = new RevokedTokenFilter(invalidatedTokenRepository, meterRegistry,
+                Math.max(1000, revokedIds), 0.01, REFRESHABLE_DURATION, 10000, Long.MAX_VALUE);
+        revokedTokenFilter.rebuild();
+
+        // Thread ghi nền không được start: benchmark không logout/refresh nên không có gì để ghi
+        invalidatedTokenWriter = new InvalidatedTokenWriter(new JdbcTemplate(), revokedTokenFilter, meterRegistry,
+                500, 200, 1000);
+
+        tokenEpochStore = new TokenEpochStore(FakeRepositories.userTokenEpochRepository());
+        tokenEpochStore.reload();
+
+        tokenVerifier = new TokenVerifier(jwtKeyRing, revokedTokenFilter, invalidatedTokenWriter, tokenEpochStore, authMetrics);
+        ReflectionTestUtils.setField(tokenVerifier, "REFRESHABLE_DURATION", REFRESHABLE_DURATION);
+
+        roleScopeCache = new RoleScopeCache(FakeRepositories.roleRepository(permissionsByRole), authMetrics);
+
+        authenticationService = new AuthenticationService(
+                FakeRepositories.userRepository(),
+                new VerifiedTokenCache(0),
+                invalidatedTokenWriter,
+                tokenVerifier,
+                jwtKeyRing,
+                new PasswordHasher(new BCryptPasswordEncoder(4), meterRegistry, 1, 1, 1000),
+                roleScopeCache,
+                new PermissionDictionary(FakeRepositories.permissionRepository()),
+                tokenEpochStore,
+                new AuthoritiesVersionStore(FakeRepositories.authoritiesVersionRepository(), roleScopeCache),
+                authMetrics);
+        ReflectionTestUtils.setField(authenticationService, "VALID_DURATION", VALID_DURATION);
+    }
+
+    /**
+     * @param cacheSize 0 để tắt cache (mọi lần decode đều verify lại)
+     */
+    CustomJWTDecoder decoder(int cacheSize){
+        CustomJWTDecoder decoder = new CustomJWTDecoder();
+        ReflectionTestUtils.setField(decoder, "tokenVerifier", tokenVerifier);
+        ReflectionTestUtils.setField(decoder, "verifiedTokenCache", new VerifiedTokenCache(cacheSize));
+        ReflectionTestUtils.setField(decoder, "jwtKeyRing", jwtKeyRing);
+        ReflectionTestUtils.setField(decoder, "tokenEpochStore", tokenEpochStore);
+        ReflectionTestUtils.setField(decoder, "authMetrics", authMetrics);
+        return decoder;
+    }
+
+    /**
+     * User có roles role, mỗi role có permissions permission
+     */
+    UserAuthorities user(int roles, int permissions){
+        List<String> roleNames = new ArrayList<>();
+        for(int i = 0; i < roles; i++){
+            Set<String> rolePermissions = new LinkedHashSet<>();
+            for(int j = 0; j < permissions; j++) rolePermissions.add("ROLE" + i + "_PERMISSION" + j);
+            permissionsByRole.put("ROLE" + i, rolePermissions);
+            roleNames.add("ROLE" + i);
+        }
+        return new UserAuthorities(UUID.randomUUID(), "benchmark", "password", roleNames);
+    }
+}
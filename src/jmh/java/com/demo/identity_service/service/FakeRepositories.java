@@ -0,0 +1,108 @@
+package com.demo.identity_service.service;
+
+import com.demo.identity_service.repository.AuthoritiesVersionRepository;
+import com.demo.identity_service.repository.InvalidatedTokenRepository;
+import com.demo.identity_service.dto.projection.RolePermissionRow;
+import com.demo.identity_service.repository.PermissionRepository;
+import com.demo.identity_service.repository.RoleRepository;
+import com.demo.identity_service.repository.UserRepository;
+import com.demo.identity_service.repository.UserTokenEpochRepository;
+
+import java.lang.reflect.Proxy;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+
+/**
+ * Repository giả lập trong bộ nhớ cho benchmark, chỉ hỗ trợ các method mà hot path cần
+ * - Method khác ném UnsupportedOperationException để benchmark không vô tình đo một đường đi khác
+ */
+final class FakeRepositories {
+    private FakeRepositories() {}
+
+    /**
+     * @param revokedIds các jti đã bị thu hồi
+     */
+    static InvalidatedTokenRepository invalidatedTokenRepository(Set<String> revokedIds){
+        return proxy(InvalidatedTokenRepository.class, Map.of(
+                "existsById", args -> revokedIds.contains((String) args[0]),
+                "findExistingIds", args -> ((Collection<?>) args[0]).stream().filter(revokedIds::contains).toList(),
+                "countByExpirationTimeAfter", args -> (long) revokedIds.size(),
+                "findIdsByExpirationTimeAfter", args -> List.copyOf(revokedIds),
+                "findIdsRevokedSince", args -> List.of()));
+    }
+
+    // Chưa user nào "đăng xuất mọi nơi": mọi user có epoch = 0
+    static UserTokenEpochRepository userTokenEpochRepository(){
+        return proxy(UserTokenEpochRepository.class, Map.of(
+                "findAll", args -> List.of(),
+                "findById", args -> Optional.empty()));
+    }
+
+    static AuthoritiesVersionRepository authoritiesVersionRepository(){
+        return proxy(AuthoritiesVersionRepository.class, Map.of());
+    }
+
+    // Không có permission nào: benchmark dùng scope đầy đủ (jwt.scope.compact=false)
+    static PermissionRepository permissionRepository(){
+        return proxy(PermissionRepository.class, Map.of(
+                "findAll", args -> List.of()));
+    }
+
+    /**
+     * @param permissionsByRole role -> các permission của role
+     */
+    static RoleRepository roleRepository(Map<String, Set<String>> permissionsByRole){
+        return proxy(RoleRepository.class, Map.of(
+                "findPermissionRows", args -> {
+                    List<RolePermissionRow> rows = new ArrayList<>();
+                    for(Object roleName : (Collection<?>) args[0]){
+                        permissionsByRole.getOrDefault(roleName, Set.of())
+                                .forEach(permission -> rows.add(row((String) roleName, permission)));
+                    }
+                    return rows;
+                }));
+    }
+
+    static UserRepository userRepository(){
+        return proxy(UserRepository.class, Map.of());
+    }
+
+    private static RolePermissionRow row(String roleName, String permissionName){
+        return new RolePermissionRow() {
+            @Override
+            public String getRoleName(){
+                return roleName;
+            }
+
+            @Override
+            public String getPermissionName(){
+                return permissionName;
+            }
+        };
+    }
+
+    @SuppressWarnings("unchecked")
+    private static <T> T proxy(Class<T> type, Map<String, Handler> handlers){
+        return (T) Proxy.newProxyInstance(type.getClassLoader(), new Class<?>[]{type}, (proxy, method, args) -> {
+            switch (method.getName()) {
+                case "toString": return "Fake" + type.getSimpleName();
+                case "hashCode": return System.identityHashCode(proxy);
+                case "equals": return proxy == args[0];
+                default:
+            }
+
+            Handler handler = handlers.get(method.getName());
+            if(handler == null) throw new UnsupportedOperationException(method.getName());
+            return handler.handle(args);
+        });
+    }
+
+    @FunctionalInterface
+    private interface Handler {
+        Object handle(Object[] args);
+    }
+}
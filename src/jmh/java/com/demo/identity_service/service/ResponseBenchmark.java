@@ -0,0 +1,95 @@
+package com.demo.identity_service.service;
+
+import com.demo.identity_service.dto.response.APIResponse;
+import com.demo.identity_service.dto.response.IntrospectResponse;
+import com.demo.identity_service.dto.response.UserResponse;
+import com.demo.identity_service.entity.Permission;
+import com.demo.identity_service.entity.Role;
+import com.demo.identity_service.entity.User;
+import com.demo.identity_service.mapper.UserMapper;
+import com.demo.identity_service.mapper.UserMapperImpl;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import com.fasterxml.jackson.datatype.jsr310.JavaTimeModule;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.time.LocalDate;
+import java.util.HashSet;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Map entity sang DTO và serialize APIResponse ra JSON như trong các controller
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ResponseBenchmark {
+    UserMapper userMapper;
+    ObjectMapper objectMapper;
+    User user;
+    APIResponse<UserResponse> userResponse;
+    APIResponse<IntrospectResponse> introspectResponse;
+
+    @Setup
+    public void setUp(){
+        userMapper = new UserMapperImpl();
+        // Cấu hình giống ObjectMapper của Spring Boot
+        objectMapper = new ObjectMapper()
+                .registerModule(new JavaTimeModule())
+                .disable(SerializationFeature.WRITE_DATES_AS_TIMESTAMPS);
+
+        Set<Role> roles = new HashSet<>();
+        for(int i = 0; i < 3; i++){
+            Set<Permission> permissions = new HashSet<>();
+            for(int j = 0; j < 5; j++){
+                permissions.add(Permission.builder().name("ROLE" + i + "_PERMISSION" + j).description("Permission " + j).build());
+            }
+            roles.add(Role.builder().name("ROLE" + i).description("Role " + i).permissions(permissions).build());
+        }
+
+        user = User.builder()
+                .id(UUID.randomUUID())
+                .username("benchmark")
+                .password("$2a$10$abcdefghijklmnopqrstuuabcdefghijklmnopqrstuvwxyz01234")
+                .firstName("Bench")
+                .lastName("Mark")
+                .dob(LocalDate.of(1990, 1, 1))
+                .roles(roles)
+                .build();
+
+        userResponse = APIResponse.<UserResponse>builder().result(userMapper.toUserResponse(user)).build();
+        introspectResponse = APIResponse.<IntrospectResponse>builder()
+                .result(IntrospectResponse.builder().valid(true).build())
+                .build();
+    }
+
+    @Benchmark
+    public UserResponse toUserResponse(){
+        return userMapper.toUserResponse(user);
+    }
+
+    @Benchmark
+    public byte[] serializeUserResponse() throws JsonProcessingException {
+        return objectMapper.writeValueAsBytes(userResponse);
+    }
+
+    @Benchmark
+    public byte[] serializeIntrospectResponse() throws JsonProcessingException {
+        return objectMapper.writeValueAsBytes(introspectResponse);
+    }
+}
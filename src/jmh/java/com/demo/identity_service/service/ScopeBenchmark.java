@@ -0,0 +1,57 @@
+package com.demo.identity_service.service;
+
+import com.demo.identity_service.dto.projection.UserAuthorities;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Build scope của token theo số role/permission của user
+ * - cached: các đoạn scope đã có trong RoleScopeCache
+ * - uncached: cache bị xóa trước mỗi lần gọi (tương đương sau khi RBAC thay đổi),
+ *   gồm cả truy vấn role -> permission trên RoleRepository giả lập
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ScopeBenchmark {
+    @Param({"1", "5", "20"})
+    int roles;
+
+    @Param({"5", "20"})
+    int permissions;
+
+    AuthFixture fixture;
+    UserAuthorities user;
+
+    @Setup
+    public void setUp(){
+        fixture = new AuthFixture(0);
+        user = fixture.user(roles, permissions);
+        fixture.authenticationService.buildScope(user, fixture.roleScopeCache.generation());
+    }
+
+    @Benchmark
+    public String cached(){
+        return fixture.authenticationService.buildScope(user, fixture.roleScopeCache.generation());
+    }
+
+    @Benchmark
+    public String uncached(){
+        fixture.roleScopeCache.clear();
+        return fixture.authenticationService.buildScope(user, fixture.roleScopeCache.generation());
+    }
+}
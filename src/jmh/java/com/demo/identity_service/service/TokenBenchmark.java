@@ -0,0 +1,70 @@
+package com.demo.identity_service.service;
+
+import com.demo.identity_service.configuration.CustomJWTDecoder;
+import com.demo.identity_service.dto.projection.UserAuthorities;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.security.oauth2.jwt.Jwt;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Tạo token, verify token và decode token trong filter xác thực
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class TokenBenchmark {
+    // Số jti đã thu hồi trong Bloom filter
+    @Param({"1000", "100000"})
+    int revokedIds;
+
+    AuthFixture fixture;
+    UserAuthorities user;
+    String token;
+    CustomJWTDecoder cachedDecoder;
+    CustomJWTDecoder uncachedDecoder;
+
+    @Setup
+    public void setUp(){
+        fixture = new AuthFixture(revokedIds);
+        user = fixture.user(3, 10);
+        token = fixture.authenticationService.generateToken(user, fixture.roleScopeCache.generation(), null);
+
+        cachedDecoder = fixture.decoder(10_000);
+        cachedDecoder.decode(token);
+        uncachedDecoder = fixture.decoder(0);
+    }
+
+    @Benchmark
+    public String generateToken(){
+        return fixture.authenticationService.generateToken(user, fixture.roleScopeCache.generation(), null);
+    }
+
+    @Benchmark
+    public VerifiedToken verifyToken() throws Exception {
+        return fixture.tokenVerifier.verify(token, false);
+    }
+
+    @Benchmark
+    public Jwt decodeCached(){
+        return cachedDecoder.decode(token);
+    }
+
+    @Benchmark
+    public Jwt decodeUncached(){
+        return uncachedDecoder.decode(token);
+    }
+}
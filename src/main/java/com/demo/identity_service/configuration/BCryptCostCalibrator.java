@@ -0,0 +1,70 @@
+package com.demo.identity_service.configuration;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.security.crypto.bcrypt.BCryptPasswordEncoder;
+
+import java.util.Arrays;
+
+/**
+ * Chọn độ mạnh (cost) của bcrypt theo độ trễ mong muốn trên máy đang chạy
+ * - Đo thời gian mã hóa ở một cost thăm dò, mỗi cost +1 làm thời gian tăng gấp đôi
+ * - Chọn cost lớn nhất có thời gian không vượt quá target-latency, giới hạn trong [min, max]
+ */
+@Slf4j
+public final class BCryptCostCalibrator {
+    private static final int PROBE_STRENGTH = 8;
+    private static final int SAMPLES = 5;
+    private static final String SAMPLE_PASSWORD = "calibration-password";
+
+    private BCryptCostCalibrator() {
+    }
+
+    /**
+     * @param targetLatencyMillis thời gian mong muốn cho một lần mã hóa
+     * @param minStrength cost tối thiểu
+     * @param maxStrength cost tối đa
+     * @return cost đã chọn
+     */
+    public static int calibrate(long targetLatencyMillis, int minStrength, int maxStrength){
+        BCryptPasswordEncoder probe = new BCryptPasswordEncoder(PROBE_STRENGTH);
+
+        // Warm-up JIT trước khi đo
+        probe.encode(SAMPLE_PASSWORD);
+
+        long[] samples = new long[SAMPLES];
+        for(int i = 0; i < SAMPLES; i++){
+            long start = System.nanoTime();
+            probe.encode(SAMPLE_PASSWORD);
+            samples[i] = System.nanoTime() - start;
+        }
+        Arrays.sort(samples);
+        double probeMillis = samples[SAMPLES / 2] / 1_000_000.0;
+
+        int strength = minStrength;
+        while(strength < maxStrength
+                && probeMillis * Math.pow(2, strength + 1 - PROBE_STRENGTH) <= targetLatencyMillis){
+            strength++;
+        }
+
+        log.info("BCrypt calibrated to strength {} (~{} ms per hash, target {} ms)",
+                strength, Math.round(probeMillis * Math.pow(2, strength - PROBE_STRENGTH)), targetLatencyMillis);
+        return strength;
+    }
+
+    /**
+     * Đọc cost từ chuỗi bcrypt dạng $2a$10$...
+     * @return cost hoặc -1 nếu không đúng định dạng
+     */
+    public static int strengthOf(String encodedPassword){
+        if(encodedPassword == null || encodedPassword.length() < 7 || encodedPassword.charAt(0) != '$') return -1;
+
+        int end = encodedPassword.indexOf('$', 1);
+        if(end < 0 || end + 3 > encodedPassword.length()) return -1;
+
+        try {
+            return Integer.parseInt(encodedPassword.substring(end + 1, end + 3));
+        }catch (NumberFormatException e){
+            return -1;
+        }
+    }
+}
@@ -1,55 +1,82 @@
 package com.demo.identity_service.configuration;
 
-import com.demo.identity_service.dto.request.IntrospectRequest;
-import com.demo.identity_service.service.AuthenticationService;
+import com.demo.identity_service.exception.AppException;
+import com.demo.identity_service.service.AuthMetrics;
+import com.demo.identity_service.service.TokenEpochStore;
+import com.demo.identity_service.service.TokenVerifier;
+import com.demo.identity_service.service.VerifiedTokenCache;
 import com.nimbusds.jose.JOSEException;
 import org.springframework.beans.factory.annotation.Autowired;
-import org.springframework.beans.factory.annotation.Value;
-import org.springframework.security.oauth2.jose.jws.MacAlgorithm;
+import org.springframework.security.oauth2.jwt.BadJwtException;
+import org.springframework.security.oauth2.jwt.JoseHeaderNames;
 import org.springframework.security.oauth2.jwt.Jwt;
 import org.springframework.security.oauth2.jwt.JwtDecoder;
 import org.springframework.security.oauth2.jwt.JwtException;
-import org.springframework.security.oauth2.jwt.NimbusJwtDecoder;
 import org.springframework.stereotype.Component;
 
-import javax.crypto.spec.SecretKeySpec;
 import java.text.ParseException;
+import java.util.Date;
 import java.util.Objects;
 
 @Component
 public class CustomJWTDecoder implements JwtDecoder {
-    @Value("${jwt.signerKey}")
-    protected String SIGNER_KEY;
+    @Autowired
+    private TokenVerifier tokenVerifier;
+
+    @Autowired
+    private VerifiedTokenCache verifiedTokenCache;
 
     @Autowired
-    private AuthenticationService authenticationService;
+    private JwtKeyRing jwtKeyRing;
 
-    private NimbusJwtDecoder nimbusJwtDecoder = null;
+    @Autowired
+    private TokenEpochStore tokenEpochStore;
+
+    @Autowired
+    private AuthMetrics authMetrics;
 
     @Override
     public Jwt decode(String token) throws JwtException {
-        try {
-            var response = authenticationService.introspect(
-                    IntrospectRequest.builder()
-                            .token(token)
-                            .build()
-            );
-
-            if(!response.isValid()){
-                throw new JwtException("Token is invalid");
+        // Token đã được xác thực trước đó: bỏ qua parse và verify chữ ký, vẫn kiểm tra thu hồi và khóa ký
+        // (thường chỉ là lookup trên Bloom filter và map trong bộ nhớ)
+        Jwt cachedJwt = verifiedTokenCache.get(token);
+        authMetrics.verifiedTokenCacheLookup(Objects.nonNull(cachedJwt));
+        if(Objects.nonNull(cachedJwt)){
+            // Token trong cache vẫn phải bị từ chối ngay sau khi user "đăng xuất mọi nơi"
+            // hoặc logout trên instance khác (evict() chỉ chạy trên instance xử lý logout)
+            if(tokenEpochStore.isRevoked(cachedJwt.getClaimAsString(TokenEpochStore.USER_ID_CLAIM),
+                    cachedJwt.getClaim(TokenEpochStore.EPOCH_CLAIM))
+                    || tokenVerifier.isRevoked(cachedJwt.getId())
+                    // Khóa đã ký token bị loại khỏi JwtKeyRing hoặc đã hết rotation-window
+                    || !isKeyActive(cachedJwt)){
+                verifiedTokenCache.evict(cachedJwt.getId(),
+                        Objects.isNull(cachedJwt.getExpiresAt()) ? null : Date.from(cachedJwt.getExpiresAt()));
+                throw new BadJwtException("Token is invalid");
             }
+            return cachedJwt;
+        }
+
+        // Parse và verify token một lần, dùng lại kết quả để tạo Jwt
+        Jwt jwt;
+        try {
+            jwt = tokenVerifier.verify(token, false).toJwt();
+        }catch (AppException e){
+            throw new BadJwtException("Token is invalid");
         }catch (JOSEException | ParseException e){
-            throw new JwtException(e.getMessage());
+            throw new BadJwtException(e.getMessage());
         }
 
-        if(Objects.isNull(nimbusJwtDecoder)){
-            SecretKeySpec secretKeySpec = new SecretKeySpec(SIGNER_KEY.getBytes(), "HS512");
-            nimbusJwtDecoder = NimbusJwtDecoder
-                    .withSecretKey(secretKeySpec)
-                    .macAlgorithm(MacAlgorithm.HS512)
-                    .build();
+        // Token không có kid không được cache: không biết khóa nào đã ký để kiểm tra lại khi khóa bị loại
+        if(isKeyActive(jwt)){
+            verifiedTokenCache.put(token, jwt);
         }
 
-        return nimbusJwtDecoder.decode(token);
+        return jwt;
+    }
+
+    private boolean isKeyActive(Jwt jwt){
+        return jwtKeyRing.isActive(
+                Objects.toString(jwt.getHeaders().get(JoseHeaderNames.ALG), null),
+                Objects.toString(jwt.getHeaders().get(JoseHeaderNames.KID), null));
     }
 }
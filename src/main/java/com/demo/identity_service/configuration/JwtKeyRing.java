@@ -0,0 +1,436 @@
+package com.demo.identity_service.configuration;
+
+import com.nimbusds.jose.JOSEException;
+import com.nimbusds.jose.JWSAlgorithm;
+import com.nimbusds.jose.JWSHeader;
+import com.nimbusds.jose.JWSSigner;
+import com.nimbusds.jose.JWSVerifier;
+import com.nimbusds.jose.crypto.ECDSASigner;
+import com.nimbusds.jose.crypto.ECDSAVerifier;
+import com.nimbusds.jose.crypto.MACSigner;
+import com.nimbusds.jose.crypto.MACVerifier;
+import com.nimbusds.jose.jca.JCAContext;
+import com.nimbusds.jose.jwk.Curve;
+import com.nimbusds.jose.jwk.ECKey;
+import com.nimbusds.jose.jwk.JWK;
+import com.nimbusds.jose.jwk.JWKSet;
+import com.nimbusds.jose.jwk.KeyUse;
+import com.nimbusds.jose.jwk.gen.ECKeyGenerator;
+import com.nimbusds.jose.util.Base64URL;
+import lombok.AccessLevel;
+import lombok.experimental.FieldDefaults;
+import lombok.experimental.NonFinal;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.text.ParseException;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Base64;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Quản lý các khóa ký JWT
+ * - Signer/verifier được khởi tạo một lần cho mỗi khóa, không tạo lại theo từng request
+ * - Mỗi token được gắn header "kid" để chọn đúng khóa khi verify
+ * - Khóa HMAC lấy từ cấu hình chung của mọi instance: jwt.signerKey / jwt.previous-signer-keys,
+ *   hoặc từ jwt.signer-keys-file (dòng đầu là khóa hiện tại, các dòng sau là khóa cũ) được đọc lại định kỳ.
+ *   Đổi khóa = cập nhật file trên mọi instance, không có API nào nhận khóa bí mật qua request
+ * - Khóa bị thay khỏi vị trí hiện tại vẫn được chấp nhận trong khoảng rotation-window
+ * - Token cũ không có kid được thử với mọi khóa còn trong rotation-window
+ * - jwt.signing.algorithm=ES256: ký bằng khóa EC P-256, public key được công bố ở /.well-known/jwks.json
+ *   để các service khác tự verify token. Token HS512 đã cấp trước đó vẫn được chấp nhận
+ */
+@Slf4j
+@Component
+@FieldDefaults(level = AccessLevel.PRIVATE, makeFinal = true)
+public class JwtKeyRing {
+    // HS512 yêu cầu khóa tối thiểu 512 bit
+    private static final int MIN_KEY_BYTES = 64;
+
+    // Đọc lại signer-keys-file khi gặp kid lạ tối đa 1 lần/giây
+    private static final long UNKNOWN_KEY_RELOAD_INTERVAL_MILLIS = 1000;
+
+    private static final Set<JWSAlgorithm> SIGNING_ALGORITHMS = Set.of(JWSAlgorithm.HS512, JWSAlgorithm.ES256);
+
+    // kid -> khóa, bao gồm khóa hiện tại và các khóa cũ còn trong rotation-window
+    Map<String, SigningKey> keys = new ConcurrentHashMap<>();
+
+    long rotationWindow;
+
+    // File chứa các khóa HMAC, rỗng = chỉ dùng jwt.signerKey / jwt.previous-signer-keys
+    String signerKeysFile;
+
+    // kid -> verifier của các khóa EC trong jwks-file, các khóa này được công bố ở JWKS
+    Map<String, JWSVerifier> ecVerifiers;
+
+    // Khóa EC dùng để ký, null khi ký bằng HS512
+    String ecKeyId;
+    JWSSigner ecSigner;
+
+    // JWK Set chỉ chứa public key, tính sẵn một lần
+    Map<String, Object> jwks;
+
+    // Không dùng synchronized: virtual thread bị ghim vào carrier thread khi chờ monitor
+    ReentrantLock rotationLock = new ReentrantLock();
+
+    AtomicLong lastUnknownKeyReload = new AtomicLong();
+
+    @NonFinal
+    volatile SigningKey currentKey;
+
+    public JwtKeyRing(@Value("${jwt.signerKey}") String signerKey,
+                      @Value("${jwt.previous-signer-keys:}") List<String> previousSignerKeys,
+                      @Value("${jwt.key-rotation-window:${jwt.refreshable-duration}}") long rotationWindow,
+                      @Value("${jwt.signer-keys-file:}") String signerKeysFile,
+                      @Value("${jwt.signing.algorithm:HS512}") String algorithm,
+                      @Value("${jwt.signing.jwks-file:}") String jwksFile) {
+        this.rotationWindow = rotationWindow;
+        this.signerKeysFile = signerKeysFile;
+
+        JWSAlgorithm signingAlgorithm = JWSAlgorithm.parse(algorithm);
+        if(!SIGNING_ALGORITHMS.contains(signingAlgorithm)){
+            throw new IllegalStateException("Unsupported jwt.signing.algorithm: " + algorithm);
+        }
+        boolean signWithEc = JWSAlgorithm.ES256.equals(signingAlgorithm);
+
+        if(Objects.isNull(signerKeysFile) || signerKeysFile.isBlank()){
+            apply(signerKey, previousSignerKeys);
+        } else {
+            try {
+                List<String> fileKeys = readSignerKeys(signerKeysFile);
+                apply(fileKeys.get(0), fileKeys.subList(1, fileKeys.size()));
+            } catch (IOException | RuntimeException e) {
+                throw new IllegalStateException("Cannot load jwt.signer-keys-file " + signerKeysFile, e);
+            }
+        }
+
+        List<ECKey> ecKeys = loadEcKeys(jwksFile, signWithEc);
+        ECKey signingKey = ecKeys.stream()
+                .filter(ECKey::isPrivate)
+                .findFirst()
+                .orElse(null);
+
+        if(signWithEc && Objects.isNull(signingKey)){
+            throw new IllegalStateException("jwt.signing.jwks-file has no EC private key to sign ES256 tokens");
+        }
+
+        try {
+            Map<String, JWSVerifier> verifiers = new HashMap<>();
+            for(ECKey ecKey : ecKeys){
+                verifiers.put(ecKey.getKeyID(), new ECDSAVerifier(ecKey.toPublicJWK()));
+            }
+            this.ecVerifiers = Map.copyOf(verifiers);
+
+            this.ecKeyId = signWithEc ? signingKey.getKeyID() : null;
+            this.ecSigner = signWithEc ? new ECDSASigner(signingKey) : null;
+        } catch (JOSEException e) {
+            throw new IllegalStateException("Invalid EC key in jwt.signing.jwks-file", e);
+        }
+
+        this.jwks = Collections.unmodifiableMap(new JWKSet(List.copyOf(ecKeys)).toJSONObject(true));
+    }
+
+    /**
+     * Tạo header cho token mới, gắn kid của khóa hiện tại
+     * @return header HS512 hoặc ES256 (theo jwt.signing.algorithm) có kid
+     */
+    public JWSHeader header(){
+        if(Objects.nonNull(ecSigner)){
+            return new JWSHeader.Builder(JWSAlgorithm.ES256)
+                    .keyID(ecKeyId)
+                    .build();
+        }
+
+        return new JWSHeader.Builder(JWSAlgorithm.HS512)
+                .keyID(currentKey.keyId())
+                .build();
+    }
+
+    /**
+     * Lấy signer của khóa hiện tại
+     */
+    public JWSSigner signer(){
+        return Objects.nonNull(ecSigner) ? ecSigner : currentKey.signer();
+    }
+
+    /**
+     * Lấy verifier theo header của token
+     * @param header header đã parse, kid null với token HS512 cũ chưa có kid
+     * @return verifier hoặc null nếu sai thuật toán, khóa không tồn tại / đã hết rotation-window
+     */
+    public JWSVerifier verifier(JWSHeader header){
+        // Token ES256 bắt buộc có kid, như khi verify bằng JWKS ở các service khác
+        if(JWSAlgorithm.ES256.equals(header.getAlgorithm())){
+            return Objects.isNull(header.getKeyID()) ? null : ecVerifiers.get(header.getKeyID());
+        }
+
+        if(!JWSAlgorithm.HS512.equals(header.getAlgorithm())) return null;
+
+        // Token được tạo trước khi có kid: không biết khóa nào đã ký
+        if(Objects.isNull(header.getKeyID())){
+            List<JWSVerifier> verifiers = activeKeys().stream()
+                    .map(SigningKey::verifier)
+                    .toList();
+            return new AnyKeyVerifier(verifiers);
+        }
+
+        SigningKey key = find(header.getKeyID());
+        if(Objects.isNull(key) && reloadForUnknownKey()){
+            // Khóa mới có thể đã được thêm vào file và dùng để ký trên instance khác
+            key = find(header.getKeyID());
+        }
+        return Objects.isNull(key) ? null : key.verifier();
+    }
+
+    /**
+     * Khóa đã ký token vẫn còn được chấp nhận, dùng cho token lấy từ VerifiedTokenCache
+     * - Không đọc lại file: token trong cache đã được verify bằng một khóa đã biết
+     * @param algorithm header alg của token
+     * @param keyId header kid của token
+     * @return false nếu khóa đã bị loại, đã hết rotation-window hoặc token không có kid
+     */
+    public boolean isActive(String algorithm, String keyId){
+        if(Objects.isNull(keyId)) return false;
+
+        if(JWSAlgorithm.ES256.getName().equals(algorithm)) return ecVerifiers.containsKey(keyId);
+
+        return JWSAlgorithm.HS512.getName().equals(algorithm) && Objects.nonNull(find(keyId));
+    }
+
+    /**
+     * Public key của các khóa EC dạng JWK Set, rỗng khi không cấu hình jwks-file
+     * - Khóa HMAC là bí mật, không bao giờ được công bố
+     */
+    public Map<String, Object> jwks(){
+        return jwks;
+    }
+
+    /**
+     * Đọc lại jwt.signer-keys-file, áp dụng khi nội dung file thay đổi
+     * - Khóa EC được đổi bằng cách cập nhật jwks-file: thêm khóa mới, giữ public key cũ
+     *   đến khi các token đã ký bằng khóa cũ hết hạn
+     * - File lỗi hoặc khóa không hợp lệ: giữ nguyên các khóa đang dùng
+     */
+    @Scheduled(fixedDelayString = "${jwt.signer-keys-reload-interval:30000}",
+            initialDelayString = "${jwt.signer-keys-reload-interval:30000}")
+    public void reload(){
+        if(Objects.isNull(signerKeysFile) || signerKeysFile.isBlank()) return;
+
+        try {
+            List<String> fileKeys = readSignerKeys(signerKeysFile);
+            apply(fileKeys.get(0), fileKeys.subList(1, fileKeys.size()));
+        } catch (IOException | RuntimeException e) {
+            log.error("Cannot reload jwt.signer-keys-file {}, keeping current keys", signerKeysFile, e);
+        }
+    }
+
+    /**
+     * Cập nhật các khóa HMAC
+     * - Khóa hiện tại mới được dùng để ký các token tiếp theo
+     * - Khóa cũ được liệt kê: hết hạn sau rotation-window kể từ lần đầu được thấy là khóa cũ
+     * - Khóa hiện tại trước đó không còn được liệt kê: vẫn verify được trong rotation-window
+     * - Khóa cũ không còn được liệt kê: bị loại ngay
+     */
+    private void apply(String signerKey, List<String> previousSignerKeys){
+        SigningKey newKey = createKey(signerKey, null);
+        List<SigningKey> previousKeys = previousSignerKeys.stream()
+                .filter(key -> !key.isBlank())
+                .map(key -> createKey(key, null))
+                .filter(key -> !key.keyId().equals(newKey.keyId()))
+                .toList();
+
+        rotationLock.lock();
+        try {
+            Instant now = Instant.now();
+            Instant retiredAt = now.plusSeconds(rotationWindow);
+            SigningKey oldKey = currentKey;
+
+            Map<String, SigningKey> updated = new HashMap<>();
+            for(SigningKey key : previousKeys){
+                SigningKey known = keys.get(key.keyId());
+                updated.put(key.keyId(), Objects.nonNull(known) && Objects.nonNull(known.retiredAt())
+                        ? known
+                        : key.retire(retiredAt));
+            }
+            if(Objects.nonNull(oldKey) && !oldKey.keyId().equals(newKey.keyId())){
+                updated.putIfAbsent(oldKey.keyId(), oldKey.retire(retiredAt));
+            }
+            updated.values().removeIf(key -> !key.retiredAt().isAfter(now));
+            updated.put(newKey.keyId(), newKey);
+
+            keys.putAll(updated);
+            keys.keySet().retainAll(updated.keySet());
+            currentKey = newKey;
+
+            if(Objects.nonNull(oldKey) && !oldKey.keyId().equals(newKey.keyId())){
+                log.info("JWT signer key rotated: {} -> {}", oldKey.keyId(), newKey.keyId());
+            }
+        } finally {
+            rotationLock.unlock();
+        }
+    }
+
+    // Kid lạ: đọc lại file ngay, nhưng không quá 1 lần/giây để token giả mạo không làm quá tải IO
+    private boolean reloadForUnknownKey(){
+        if(Objects.isNull(signerKeysFile) || signerKeysFile.isBlank()) return false;
+
+        long now = System.currentTimeMillis();
+        long last = lastUnknownKeyReload.get();
+        if(now - last < UNKNOWN_KEY_RELOAD_INTERVAL_MILLIS || !lastUnknownKeyReload.compareAndSet(last, now)){
+            return false;
+        }
+
+        reload();
+        return true;
+    }
+
+    // Mỗi dòng không rỗng là một khóa, bỏ qua dòng bắt đầu bằng #
+    private static List<String> readSignerKeys(String signerKeysFile) throws IOException {
+        List<String> signerKeys = Files.readAllLines(Path.of(signerKeysFile)).stream()
+                .map(String::strip)
+                .filter(line -> !line.isEmpty() && !line.startsWith("#"))
+                .toList();
+
+        if(signerKeys.isEmpty()){
+            throw new IllegalStateException("jwt.signer-keys-file has no signer key");
+        }
+        return signerKeys;
+    }
+
+    /**
+     * Đọc các khóa EC P-256 từ file JWK Set
+     * - Khóa đầu tiên có private key được dùng để ký, các khóa còn lại chỉ để verify
+     * - Khóa không có kid được gán kid = JWK thumbprint
+     * - Không có file và ký ES256: tạo khóa mới lúc khởi động, token không verify được sau khi khởi động lại
+     *   hoặc trên instance khác, chỉ dùng khi dev
+     */
+    private static List<ECKey> loadEcKeys(String jwksFile, boolean required){
+        try {
+            if(Objects.isNull(jwksFile) || jwksFile.isBlank()){
+                if(!required) return List.of();
+
+                log.warn("jwt.signing.jwks-file is not set, using an ES256 key generated at startup");
+                return List.of(new ECKeyGenerator(Curve.P_256)
+                        .keyUse(KeyUse.SIGNATURE)
+                        .keyIDFromThumbprint(true)
+                        .generate());
+            }
+
+            List<ECKey> ecKeys = new ArrayList<>();
+            for(JWK jwk : JWKSet.load(new File(jwksFile)).getKeys()){
+                if(!(jwk instanceof ECKey ecKey) || !Curve.P_256.equals(ecKey.getCurve())){
+                    throw new IllegalStateException("Only EC P-256 keys are supported in jwt.signing.jwks-file");
+                }
+
+                ecKeys.add(Objects.nonNull(ecKey.getKeyID())
+                        ? ecKey
+                        : new ECKey.Builder(ecKey).keyIDFromThumbprint().build());
+            }
+            return ecKeys;
+        } catch (IOException | ParseException | JOSEException e) {
+            throw new IllegalStateException("Cannot load jwt.signing.jwks-file " + jwksFile, e);
+        }
+    }
+
+    private SigningKey find(String keyId){
+        SigningKey key = keys.get(keyId);
+        if(Objects.isNull(key)) return null;
+
+        if(Objects.nonNull(key.retiredAt()) && !key.retiredAt().isAfter(Instant.now())) return null;
+
+        return key;
+    }
+
+    // Khóa hiện tại và các khóa cũ chưa hết rotation-window
+    private List<SigningKey> activeKeys(){
+        Instant now = Instant.now();
+        return keys.values().stream()
+                .filter(key -> Objects.isNull(key.retiredAt()) || key.retiredAt().isAfter(now))
+                .toList();
+    }
+
+    // Khóa lỗi trong cấu hình: làm hỏng lúc khởi động, hoặc bị bỏ qua khi reload (giữ khóa đang dùng)
+    private SigningKey createKey(String signerKey, Instant retiredAt){
+        if(Objects.isNull(signerKey) || signerKey.isEmpty()){
+            throw new IllegalArgumentException("JWT signer key is empty");
+        }
+
+        byte[] secret = signerKey.getBytes();
+        String keyId = keyId(secret);
+
+        if(secret.length < MIN_KEY_BYTES){
+            throw new IllegalArgumentException("JWT signer key " + keyId + " must be at least 512 bits");
+        }
+
+        try {
+            return new SigningKey(
+                    keyId,
+                    new MACSigner(secret),
+                    new MACVerifier(secret),
+                    retiredAt);
+        } catch (JOSEException e) {
+            throw new IllegalArgumentException("Invalid JWT signer key " + keyId, e);
+        }
+    }
+
+    // kid = 12 ký tự đầu của SHA-256(khóa), không làm lộ khóa
+    private static String keyId(byte[] secret){
+        try {
+            byte[] hash = MessageDigest.getInstance("SHA-256").digest(secret);
+            return Base64.getUrlEncoder().withoutPadding()
+                    .encodeToString(hash)
+                    .substring(0, 12);
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private record SigningKey(String keyId,
+                              JWSSigner signer,
+                              JWSVerifier verifier,
+                              Instant retiredAt) {
+        SigningKey retire(Instant retiredAt){
+            return new SigningKey(keyId, signer, verifier, retiredAt);
+        }
+    }
+
+    /**
+     * Verify token không có kid: hợp lệ nếu chữ ký khớp với một trong các khóa
+     */
+    private record AnyKeyVerifier(List<JWSVerifier> verifiers) implements JWSVerifier {
+        @Override
+        public boolean verify(JWSHeader header, byte[] signingInput, Base64URL signature) throws JOSEException {
+            for(JWSVerifier verifier : verifiers){
+                if(verifier.verify(header, signingInput, signature)) return true;
+            }
+            return false;
+        }
+
+        @Override
+        public Set<JWSAlgorithm> supportedJWSAlgorithms(){
+            return Set.of(JWSAlgorithm.HS512);
+        }
+
+        @Override
+        public JCAContext getJCAContext(){
+            return new JCAContext();
+        }
+    }
+}
@@ -0,0 +1,39 @@
+package com.demo.identity_service.configuration;
+
+import io.micrometer.core.instrument.Meter;
+import io.micrometer.core.instrument.config.MeterFilter;
+import io.micrometer.core.instrument.distribution.DistributionStatisticConfig;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+import java.util.Objects;
+
+/**
+ * Cấu hình metrics xuất ra Prometheus (/actuator/prometheus)
+ * - Chỉ các request /auth/* có percentile histogram, tránh tăng số time series cho mọi endpoint
+ * - p99 tính trên Prometheus: histogram_quantile(0.99, rate(http_server_requests_seconds_bucket{uri=~"/auth/.*"}[5m]))
+ */
+@Configuration
+public class MetricsConfig {
+    private static final String HTTP_SERVER_REQUESTS = "http.server.requests";
+    private static final String AUTH_URI_PREFIX = "/auth/";
+
+    @Bean
+    MeterFilter authEndpointHistogramFilter(){
+        return new MeterFilter() {
+            @Override
+            public DistributionStatisticConfig configure(Meter.Id id, DistributionStatisticConfig config) {
+                String uri = id.getTag("uri");
+
+                if(!HTTP_SERVER_REQUESTS.equals(id.getName()) || Objects.isNull(uri) || !uri.startsWith(AUTH_URI_PREFIX)){
+                    return config;
+                }
+
+                return DistributionStatisticConfig.builder()
+                        .percentilesHistogram(true)
+                        .build()
+                        .merge(config);
+            }
+        };
+    }
+}
@@ -0,0 +1,47 @@
+package com.demo.identity_service.configuration;
+
+import com.demo.identity_service.service.PermissionDictionary;
+import lombok.AccessLevel;
+import lombok.RequiredArgsConstructor;
+import lombok.experimental.FieldDefaults;
+import org.springframework.core.convert.converter.Converter;
+import org.springframework.security.core.GrantedAuthority;
+import org.springframework.security.core.authority.SimpleGrantedAuthority;
+import org.springframework.security.oauth2.jwt.Jwt;
+import org.springframework.security.oauth2.server.resource.InvalidBearerTokenException;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Objects;
+import java.util.Set;
+
+/**
+ * Lấy quyền từ JWT: các quyền trong claim scope cộng với các permission được mã hóa trong claim perm
+ * - Token không có claim perm (jwt.scope.compact=false) giữ nguyên cách lấy quyền cũ
+ */
+@RequiredArgsConstructor
+@FieldDefaults(level = AccessLevel.PRIVATE, makeFinal = true)
+public class PermissionAuthoritiesConverter implements Converter<Jwt, Collection<GrantedAuthority>> {
+    Converter<Jwt, Collection<GrantedAuthority>> scopeConverter;
+    PermissionDictionary permissionDictionary;
+
+    @Override
+    public Collection<GrantedAuthority> convert(Jwt jwt) {
+        Collection<GrantedAuthority> scopeAuthorities = scopeConverter.convert(jwt);
+
+        String claim = jwt.getClaimAsString(PermissionDictionary.CLAIM);
+        if(Objects.isNull(claim)) return scopeAuthorities;
+
+        Set<String> permissions = permissionDictionary.decode(claim);
+        // Từ điển của token không còn được giữ: trả về 401 để client lấy token mới thay vì thiếu quyền
+        if(Objects.isNull(permissions)){
+            throw new InvalidBearerTokenException("Permission dictionary of the token is no longer available");
+        }
+
+        List<GrantedAuthority> authorities = new ArrayList<>(scopeAuthorities.size() + permissions.size());
+        authorities.addAll(scopeAuthorities);
+        permissions.forEach(permission -> authorities.add(new SimpleGrantedAuthority(permission)));
+        return authorities;
+    }
+}
@@ -1,24 +1,27 @@
 package com.demo.identity_service.configuration;
 
 import com.demo.identity_service.enums.Role;
+import com.demo.identity_service.service.PermissionDictionary;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.web.context.WebServerInitializedEvent;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
+import org.springframework.context.event.EventListener;
 import org.springframework.http.HttpMethod;
 import org.springframework.security.config.annotation.method.configuration.EnableMethodSecurity;
 import org.springframework.security.config.annotation.web.builders.HttpSecurity;
 import org.springframework.security.config.annotation.web.configuration.EnableWebSecurity;
 import org.springframework.security.crypto.bcrypt.BCryptPasswordEncoder;
+import org.springframework.security.crypto.password.DelegatingPasswordEncoder;
 import org.springframework.security.crypto.password.PasswordEncoder;
-import org.springframework.security.oauth2.jose.jws.MacAlgorithm;
-import org.springframework.security.oauth2.jwt.JwtDecoder;
-import org.springframework.security.oauth2.jwt.NimbusJwtDecoder;
 import org.springframework.security.oauth2.server.resource.authentication.JwtAuthenticationConverter;
 import org.springframework.security.oauth2.server.resource.authentication.JwtGrantedAuthoritiesConverter;
 import org.springframework.security.web.SecurityFilterChain;
+import org.springframework.security.web.util.matcher.AndRequestMatcher;
+import org.springframework.security.web.util.matcher.AntPathRequestMatcher;
 
-import javax.crypto.spec.SecretKeySpec;
+import java.util.Map;
 
 /**
  * Cấu hình bảo mật cho ứng dụng
@@ -35,6 +38,7 @@ public class SecurityConfig {
      * - /users: đăng ký user mới
      * - /auth/token: đăng nhập
      * - /auth/introspect: kiểm tra token
+     * - /auth/introspect/batch: kiểm tra nhiều token
      * - /auth/logout: đăng xuất
      * - /auth/refresh: làm mới token
      */
@@ -42,9 +46,36 @@ public class SecurityConfig {
             {"/users",
             "/auth/token",
             "/auth/introspect",
+            "/auth/introspect/batch",
             "/auth/logout",
             "/auth/refresh"};
 
+    /**
+     * Health check của Actuator (GET), không cần token
+     * - Chỉ health và prometheus được expose, xem management.endpoints.web.exposure
+     */
+    private final String[] HEALTH_ENDPOINTS =
+            {"/actuator/health"};
+
+    /**
+     * Prometheus scrape (GET)
+     * - Không cần token khi đi qua cổng management (management.server.port, không public ra ngoài)
+     * - Trên cổng của API (khi không tách cổng management) yêu cầu token của ADMIN
+     */
+    private final String PROMETHEUS_ENDPOINT = "/actuator/prometheus";
+
+    // server namespace của child context chạy management server
+    private static final String MANAGEMENT_NAMESPACE = "management";
+
+    // Cổng thực tế của management server, -1 khi Actuator dùng chung cổng với API
+    private volatile int managementPort = -1;
+
+    /**
+     * Public key để các service khác tự verify token (GET)
+     */
+    private final String[] JWKS_ENDPOINTS =
+            {"/.well-known/jwks.json"};
+
     /**
      * Cấu hình bộ lọc bảo mật
      * @param httpSecurity đối tượng cấu hình
@@ -57,6 +88,14 @@ public class SecurityConfig {
                 authorizationManagerRequestMatcherRegistry
                         // Cho phép truy cập tự do các PUBLIC_ENDPOINTS với method POST
                         .requestMatchers(HttpMethod.POST, PUBLIC_ENDPOINTS).permitAll()
+                        // Health check không gửi token
+                        .requestMatchers(HttpMethod.GET, HEALTH_ENDPOINTS).permitAll()
+                        // Prometheus scrape không gửi token, chỉ qua cổng management
+                        .requestMatchers(new AndRequestMatcher(
+                                AntPathRequestMatcher.antMatcher(HttpMethod.GET, PROMETHEUS_ENDPOINT),
+                                request -> request.getLocalPort() == managementPort)).permitAll()
+                        .requestMatchers(HttpMethod.GET, PROMETHEUS_ENDPOINT).hasRole(Role.ADMIN.name())
+                        .requestMatchers(HttpMethod.GET, JWKS_ENDPOINTS).permitAll()
                         // Các request khác yêu cầu xác thực
                         .anyRequest().authenticated());
 
@@ -74,6 +113,16 @@ public class SecurityConfig {
         return httpSecurity.build();
     }
 
+    /**
+     * Ghi nhận cổng của management server khi nó khởi động (kể cả management.server.port=0)
+     */
+    @EventListener
+    void onWebServerInitialized(WebServerInitializedEvent event){
+        if(MANAGEMENT_NAMESPACE.equals(event.getApplicationContext().getServerNamespace())){
+            managementPort = event.getWebServer().getPort();
+        }
+    }
+
     // Khóa bí mật để verify JWT
     @Value("${jwt.signerKey}")
     private String signerKey;
@@ -82,6 +131,10 @@ public class SecurityConfig {
     @Autowired
     private CustomJWTDecoder customJWTDecoder;
 
+    // Giải mã claim perm dạng bitset
+    @Autowired
+    private PermissionDictionary permissionDictionary;
+
     /**
      * Cấu hình chuyển đổi JWT thành Authentication object
      * @return converter đã cấu hình
@@ -94,16 +147,40 @@ public class SecurityConfig {
         jwtGrantedAuthoritiesConverter.setAuthorityPrefix("");
 
         JwtAuthenticationConverter jwtAuthenticationConverter = new JwtAuthenticationConverter();
-        jwtAuthenticationConverter.setJwtGrantedAuthoritiesConverter(jwtGrantedAuthoritiesConverter);
+        // Thêm các permission trong claim perm (jwt.scope.compact=true)
+        jwtAuthenticationConverter.setJwtGrantedAuthoritiesConverter(
+                new PermissionAuthoritiesConverter(jwtGrantedAuthoritiesConverter, permissionDictionary));
         return jwtAuthenticationConverter;
     }
 
     /**
      * Cấu hình encoder để mã hóa mật khẩu
-     * @return BCryptPasswordEncoder với độ mạnh = 10
+     * - Độ mạnh bcrypt được đo khi khởi động theo security.password.bcrypt.target-latency
+     *   (hoặc cố định bằng security.password.bcrypt.strength)
+     * - Mật khẩu được lưu dạng {bcrypt}$2a$NN$..., mật khẩu cũ không có tiền tố vẫn so khớp được
+     * - upgradeEncoding() = true khi cost đã lưu thấp hơn cost hiện tại, dùng để rehash sau khi đăng nhập.
+     *   Cost cao hơn được giữ nguyên: instance đo được cost thấp hơn không được hạ độ mạnh của mật khẩu
+     * @return DelegatingPasswordEncoder với bcrypt là thuật toán mặc định
      */
     @Bean
-    PasswordEncoder passwordEncoder(){
-        return new BCryptPasswordEncoder(10);
+    PasswordEncoder passwordEncoder(@Value("${security.password.bcrypt.strength:0}") int strength,
+                                    @Value("${security.password.bcrypt.target-latency:250}") long targetLatency,
+                                    @Value("${security.password.bcrypt.min-strength:10}") int minStrength,
+                                    @Value("${security.password.bcrypt.max-strength:14}") int maxStrength){
+        int bcryptStrength = strength > 0
+                ? strength
+                : BCryptCostCalibrator.calibrate(targetLatency, minStrength, maxStrength);
+
+        BCryptPasswordEncoder bCryptPasswordEncoder = new BCryptPasswordEncoder(bcryptStrength) {
+            @Override
+            public boolean upgradeEncoding(String encodedPassword) {
+                return BCryptCostCalibrator.strengthOf(encodedPassword) < bcryptStrength;
+            }
+        };
+
+        DelegatingPasswordEncoder passwordEncoder =
+                new DelegatingPasswordEncoder("bcrypt", Map.of("bcrypt", bCryptPasswordEncoder));
+        passwordEncoder.setDefaultPasswordEncoderForMatches(bCryptPasswordEncoder);
+        return passwordEncoder;
     }
 }
\ No newline at end of file
@@ -2,12 +2,14 @@ package com.demo.identity_service.controller;
 
 
 import com.demo.identity_service.dto.request.AuthenticationRequest;
+import com.demo.identity_service.dto.request.IntrospectBatchRequest;
 import com.demo.identity_service.dto.request.IntrospectRequest;
 import com.demo.identity_service.dto.request.LogOutRequest;
 import com.demo.identity_service.dto.request.RefreshRequest;
 import com.demo.identity_service.dto.response.APIResponse;
 import com.demo.identity_service.dto.response.AuthenticationResponse;
 import com.demo.identity_service.dto.response.IntrospectResponse;
+import com.demo.identity_service.dto.response.TokenEpochResponse;
 import com.demo.identity_service.service.AuthenticationService;
 import com.nimbusds.jose.JOSEException;
 import lombok.*;
@@ -18,6 +20,7 @@ import org.springframework.web.bind.annotation.RequestMapping;
 import org.springframework.web.bind.annotation.RestController;
 
 import java.text.ParseException;
+import java.util.List;
 
 @RestController
 @RequestMapping("/auth")
@@ -44,6 +47,14 @@ public class AuthenticationController {
                 .build();
     }
 
+    @PostMapping("/introspect/batch")
+    APIResponse<List<IntrospectResponse>> introspectBatch(@RequestBody IntrospectBatchRequest request){
+        var result = authenticationService.introspectBatch(request);
+        return APIResponse.<List<IntrospectResponse>>builder()
+                .result(result)
+                .build();
+    }
+
     @PostMapping("/refresh")
     APIResponse<AuthenticationResponse> authenticate(@RequestBody RefreshRequest request)
             throws ParseException, JOSEException {
@@ -60,4 +71,14 @@ public class AuthenticationController {
         return APIResponse.builder()
                 .build();
     }
+
+    /**
+     * Đăng xuất khỏi mọi thiết bị, yêu cầu token hợp lệ của chính user
+     */
+    @PostMapping("/logout/all")
+    APIResponse<TokenEpochResponse> logoutAll(){
+        return APIResponse.<TokenEpochResponse>builder()
+                .result(authenticationService.logoutAll())
+                .build();
+    }
 }
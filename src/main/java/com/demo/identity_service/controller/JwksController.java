@@ -0,0 +1,39 @@
+package com.demo.identity_service.controller;
+
+import com.demo.identity_service.configuration.JwtKeyRing;
+import lombok.AccessLevel;
+import lombok.RequiredArgsConstructor;
+import lombok.experimental.FieldDefaults;
+import lombok.experimental.NonFinal;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.CacheControl;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.RestController;
+
+import java.time.Duration;
+import java.util.Map;
+
+/**
+ * Công bố public key ký JWT (RFC 7517) để các service khác tự verify token ES256,
+ * không cần gọi /auth/introspect
+ * - Trả về JWK Set gốc, không bọc trong APIResponse, để dùng trực tiếp với các thư viện JWT
+ */
+@RestController
+@RequiredArgsConstructor
+@FieldDefaults(level = AccessLevel.PRIVATE, makeFinal = true)
+public class JwksController {
+    JwtKeyRing jwtKeyRing;
+
+    @NonFinal
+    @Value("${jwt.jwks.max-age:300}")
+    protected long MAX_AGE;
+
+    @GetMapping("/.well-known/jwks.json")
+    ResponseEntity<Map<String, Object>> jwks(){
+        // Khóa chỉ thay đổi khi khởi động lại: cho phép client/proxy cache trong max-age
+        return ResponseEntity.ok()
+                .cacheControl(CacheControl.maxAge(Duration.ofSeconds(MAX_AGE)).cachePublic())
+                .body(jwtKeyRing.jwks());
+    }
+}
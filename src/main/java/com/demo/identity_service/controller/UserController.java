@@ -3,6 +3,9 @@ package com.demo.identity_service.controller;
 import com.demo.identity_service.dto.response.APIResponse;
 import com.demo.identity_service.dto.request.UserCreationRequest;
 import com.demo.identity_service.dto.request.UserUpdateRequest;
+import com.demo.identity_service.dto.response.CursorPageResponse;
+import com.demo.identity_service.dto.response.TokenEpochResponse;
+import com.demo.identity_service.dto.response.UserImportResponse;
 import com.demo.identity_service.dto.response.UserResponse;
 import com.demo.identity_service.entity.User;
 import com.demo.identity_service.service.UserService;
@@ -12,10 +15,16 @@ import lombok.RequiredArgsConstructor;
 import lombok.experimental.FieldDefaults;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
 import org.springframework.security.core.context.SecurityContextHolder;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
-import java.util.List;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Objects;
 
 @RestController
 @RequestMapping("/users")
@@ -38,13 +47,42 @@ public class UserController {
     }
 
     @GetMapping
-    List<User> getAllUsers(){
+    APIResponse<CursorPageResponse<UserResponse>> getAllUsers(
+            @RequestParam(value = "cursor", required = false) String cursor,
+            @RequestParam(value = "size", defaultValue = "50") int size){
         var authentication = SecurityContextHolder.getContext().getAuthentication();
 
-        log.info("Username: {}", authentication.getName());
-        authentication.getAuthorities().forEach(grantedAuthority -> log.info(grantedAuthority.getAuthority()));
+        log.debug("Username: {}", authentication.getName());
 
-        return userService.getAllUsers();
+        return APIResponse.<CursorPageResponse<UserResponse>>builder()
+                .result(userService.getAllUsers(cursor, size))
+                .build();
+    }
+
+    /**
+     * Tạo user hàng loạt, body là NDJSON (mỗi dòng một UserCreationRequest)
+     */
+    @PostMapping(value = "/import", consumes = {MediaType.APPLICATION_NDJSON_VALUE, "application/x-ndjson"})
+    APIResponse<UserImportResponse> importUsers(InputStream body) throws IOException {
+        return APIResponse.<UserImportResponse>builder()
+                .result(userService.importUsers(body))
+                .build();
+    }
+
+    /**
+     * Export toàn bộ user dạng NDJSON, nén gzip khi client gửi Accept-Encoding: gzip
+     */
+    @GetMapping("/export")
+    ResponseEntity<StreamingResponseBody> exportUsers(
+            @RequestHeader(value = HttpHeaders.ACCEPT_ENCODING, required = false) String acceptEncoding){
+        boolean gzip = Objects.nonNull(acceptEncoding) && acceptEncoding.contains("gzip");
+
+        var response = ResponseEntity.ok()
+                .contentType(MediaType.APPLICATION_NDJSON)
+                .header(HttpHeaders.CONTENT_DISPOSITION, "attachment; filename=\"users.ndjson\"");
+        if(gzip) response.header(HttpHeaders.CONTENT_ENCODING, "gzip");
+
+        return response.body(userService.exportUsers(gzip));
     }
 
     @GetMapping("/{userId}")
@@ -62,6 +100,16 @@ public class UserController {
         return userService.updateUser(userId, request);
     }
 
+    /**
+     * Thu hồi mọi token của user (chỉ ADMIN)
+     */
+    @PostMapping("/{userId}/tokens/revoke")
+    APIResponse<TokenEpochResponse> revokeTokens(@PathVariable("userId") String userId){
+        return APIResponse.<TokenEpochResponse>builder()
+                .result(userService.revokeTokens(userId))
+                .build();
+    }
+
     @DeleteMapping("/{userId}")
     String deleteUserById(@PathVariable("userId") String userId){
         userService.deleteUserById(userId);
@@ -0,0 +1,9 @@
+package com.demo.identity_service.dto.projection;
+
+/**
+ * Một dòng kết quả của truy vấn role + permission (xem RoleRepository.findPermissionRows)
+ */
+public interface RolePermissionRow {
+    String getRoleName();
+    String getPermissionName();
+}
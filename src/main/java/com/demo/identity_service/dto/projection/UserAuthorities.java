@@ -0,0 +1,36 @@
+package com.demo.identity_service.dto.projection;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Objects;
+import java.util.Optional;
+import java.util.UUID;
+
+/**
+ * Thông tin đăng nhập của user dạng phẳng: id, username, mật khẩu và tên các role
+ * - Được gom từ một truy vấn duy nhất, không load entity User/Role/Permission
+ * - Permission của từng role được lấy từ RoleScopeCache, không load theo từng lần đăng nhập
+ * @param roleNames tên các role, giữ đúng thứ tự trả về
+ */
+public record UserAuthorities(UUID id,
+                              String username,
+                              String password,
+                              List<String> roleNames) {
+
+    /**
+     * Gom các dòng user x role thành một UserAuthorities
+     * @param rows kết quả truy vấn, rỗng nếu không có user
+     */
+    public static Optional<UserAuthorities> from(List<UserAuthorityRow> rows){
+        if(rows.isEmpty()) return Optional.empty();
+
+        UserAuthorityRow first = rows.getFirst();
+        List<String> roleNames = new ArrayList<>(rows.size());
+
+        rows.forEach(row -> {
+            if(Objects.nonNull(row.getRoleName())) roleNames.add(row.getRoleName());
+        });
+
+        return Optional.of(new UserAuthorities(first.getId(), first.getUsername(), first.getPassword(), roleNames));
+    }
+}
@@ -0,0 +1,13 @@
+package com.demo.identity_service.dto.projection;
+
+import java.util.UUID;
+
+/**
+ * Một dòng kết quả của truy vấn user + role (xem UserRepository.findAuthoritiesByUsername)
+ */
+public interface UserAuthorityRow {
+    UUID getId();
+    String getUsername();
+    String getPassword();
+    String getRoleName();
+}
@@ -0,0 +1,17 @@
+package com.demo.identity_service.dto.projection;
+
+import java.time.LocalDate;
+import java.util.UUID;
+
+/**
+ * Một dòng kết quả của truy vấn export user (xem UserRepository.streamAllForExport)
+ * - Mỗi dòng là một cặp (user, role), user không có role vẫn trả về một dòng với roleName null
+ */
+public interface UserExportRow {
+    UUID getId();
+    String getUsername();
+    String getFirstName();
+    String getLastName();
+    LocalDate getDob();
+    String getRoleName();
+}
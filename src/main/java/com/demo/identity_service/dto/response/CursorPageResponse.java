@@ -0,0 +1,18 @@
+package com.demo.identity_service.dto.response;
+
+import lombok.*;
+import lombok.experimental.FieldDefaults;
+
+import java.util.List;
+
+@Data
+@AllArgsConstructor
+@NoArgsConstructor
+@Builder
+@FieldDefaults(level = AccessLevel.PRIVATE)
+public class CursorPageResponse<T> {
+    List<T> items;
+    // Truyền lại vào tham số cursor để lấy trang tiếp theo, null khi đã hết dữ liệu
+    String nextCursor;
+    boolean hasNext;
+}
@@ -0,0 +1,15 @@
+package com.demo.identity_service.dto.response;
+
+import lombok.*;
+import lombok.experimental.FieldDefaults;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+@FieldDefaults(level = AccessLevel.PRIVATE)
+public class TokenEpochResponse {
+    String userId;
+    // Các token có epoch nhỏ hơn giá trị này đã bị thu hồi
+    long epoch;
+}
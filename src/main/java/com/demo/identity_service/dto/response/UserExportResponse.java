@@ -0,0 +1,21 @@
+package com.demo.identity_service.dto.response;
+
+import lombok.*;
+import lombok.experimental.FieldDefaults;
+
+import java.time.LocalDate;
+import java.util.List;
+
+@Data
+@AllArgsConstructor
+@NoArgsConstructor
+@Builder
+@FieldDefaults(level = AccessLevel.PRIVATE)
+public class UserExportResponse {
+    String id;
+    String username;
+    String firstName;
+    String lastName;
+    LocalDate dob;
+    List<String> roles;
+}
@@ -0,0 +1,18 @@
+package com.demo.identity_service.dto.response;
+
+import lombok.*;
+import lombok.experimental.FieldDefaults;
+
+import java.util.List;
+
+@Data
+@AllArgsConstructor
+@NoArgsConstructor
+@Builder
+@FieldDefaults(level = AccessLevel.PRIVATE)
+public class UserImportResponse {
+    int total;
+    int created;
+    int failed;
+    List<UserImportResult> results;
+}
@@ -0,0 +1,22 @@
+package com.demo.identity_service.dto.response;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+import lombok.*;
+import lombok.experimental.FieldDefaults;
+
+@JsonInclude(JsonInclude.Include.NON_NULL)
+@Data
+@AllArgsConstructor
+@NoArgsConstructor
+@Builder
+@FieldDefaults(level = AccessLevel.PRIVATE)
+public class UserImportResult {
+    // Số thứ tự dòng trong file NDJSON, bắt đầu từ 1
+    int line;
+    String username;
+    // Id của user vừa tạo, null nếu thất bại
+    String id;
+    @Builder.Default
+    int code = 1000;
+    String message;
+}
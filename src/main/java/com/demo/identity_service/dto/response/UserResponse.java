@@ -5,6 +5,7 @@ import lombok.experimental.FieldDefaults;
 
 import java.time.LocalDate;
 import java.util.Set;
+import java.util.UUID;
 
 @Data
 @AllArgsConstructor
@@ -18,4 +19,13 @@ public class UserResponse {
     String lastName;
     LocalDate dob;
     Set<RoleResponse> roles;
+
+    // Dùng cho projection trong JPQL (select new ...), không load roles
+    public UserResponse(UUID id, String username, String firstName, String lastName, LocalDate dob) {
+        this.id = id.toString();
+        this.username = username;
+        this.firstName = firstName;
+        this.lastName = lastName;
+        this.dob = dob;
+    }
 }
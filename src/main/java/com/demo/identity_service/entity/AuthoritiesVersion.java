@@ -0,0 +1,25 @@
+package com.demo.identity_service.entity;
+
+import jakarta.persistence.Entity;
+import jakarta.persistence.Id;
+import lombok.*;
+import lombok.experimental.FieldDefaults;
+
+/**
+ * Phiên bản quyền, tăng mỗi khi quyền thay đổi
+ * - id = username: roles của user thay đổi (hoặc user bị xóa)
+ * - id = "*": role/permission thay đổi, ảnh hưởng đến mọi user
+ * - Chưa có dòng nào tương ứng với version = 0
+ */
+@Entity
+@Getter
+@Setter
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+@FieldDefaults(level = AccessLevel.PRIVATE)
+public class AuthoritiesVersion {
+    @Id
+    String id;
+    long version;
+}
@@ -2,6 +2,8 @@ package com.demo.identity_service.entity;
 
 import jakarta.persistence.Entity;
 import jakarta.persistence.Id;
+import jakarta.persistence.Index;
+import jakarta.persistence.Table;
 import lombok.*;
 import lombok.experimental.FieldDefaults;
 
@@ -14,10 +16,16 @@ import java.util.Date;
 @NoArgsConstructor
 @AllArgsConstructor
 @FieldDefaults(level = AccessLevel.PRIVATE)
+@Table(indexes = {
+        @Index(name = "idx_invalidated_token_expiration_time", columnList = "expirationTime"),
+        @Index(name = "idx_invalidated_token_revoked_at", columnList = "revokedAt")
+})
 public class InvalidatedToken {
     @Id
     String id;
     Date expirationTime;
+    // Thời điểm dòng được ghi, các instance khác đọc các dòng mới theo cột này (RevokedTokenFilter.sync)
+    Date revokedAt;
 }
 
 
@@ -3,11 +3,16 @@ package com.demo.identity_service.entity;
 import jakarta.persistence.*;
 import lombok.*;
 import lombok.experimental.FieldDefaults;
+import org.hibernate.annotations.JdbcTypeCode;
+import org.hibernate.type.SqlTypes;
 
 import java.time.LocalDate;
 import java.util.Set;
+import java.util.UUID;
 
 @Entity
+// Unique index: chặn trùng username khi tạo đồng thời và dùng cho tìm kiếm theo username
+@Table(uniqueConstraints = @UniqueConstraint(name = User.USERNAME_CONSTRAINT, columnNames = "username"))
 @Getter
 @Setter
 @Builder
@@ -15,9 +20,14 @@ import java.util.Set;
 @AllArgsConstructor
 @FieldDefaults(level = AccessLevel.PRIVATE)
 public class User {
+    public static final String USERNAME_CONSTRAINT = "uk_user_username";
+
+    // UUID v7 lưu dạng BINARY(16), bên ngoài (UserResponse, /users/{userId}) vẫn là chuỗi UUID
     @Id
-    @GeneratedValue(strategy = GenerationType.UUID)
-    String id;
+    @UuidV7
+    @JdbcTypeCode(SqlTypes.BINARY)
+    @Column(length = 16)
+    UUID id;
     String username;
     String password;
     String firstName;
@@ -0,0 +1,30 @@
+package com.demo.identity_service.entity;
+
+import jakarta.persistence.Column;
+import jakarta.persistence.Entity;
+import jakarta.persistence.Id;
+import lombok.*;
+import lombok.experimental.FieldDefaults;
+import org.hibernate.annotations.JdbcTypeCode;
+import org.hibernate.type.SqlTypes;
+
+import java.util.UUID;
+
+/**
+ * Epoch token của user: token có claim epc nhỏ hơn epoch hiện tại bị từ chối
+ * - Chỉ có dòng cho user đã từng "đăng xuất mọi nơi", user khác có epoch = 0
+ */
+@Entity
+@Getter
+@Setter
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+@FieldDefaults(level = AccessLevel.PRIVATE)
+public class UserTokenEpoch {
+    @Id
+    @JdbcTypeCode(SqlTypes.BINARY)
+    @Column(length = 16)
+    UUID userId;
+    long epoch;
+}
@@ -0,0 +1,41 @@
+package com.demo.identity_service.entity;
+
+import org.hibernate.engine.spi.SharedSessionContractImplementor;
+import org.hibernate.generator.BeforeExecutionGenerator;
+import org.hibernate.generator.EventType;
+
+import java.util.EnumSet;
+import java.util.UUID;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * UUID version 7: 48 bit đầu là thời gian (millisecond), phần còn lại là số ngẫu nhiên
+ * - Id sinh sau luôn lớn hơn id sinh trước theo thứ tự byte (khác millisecond),
+ *   nên insert luôn ghi vào cuối clustered index thay vì chèn ngẫu nhiên như UUID v4
+ * - Lưu dạng BINARY(16) thay vì chuỗi 36 ký tự
+ */
+public class UuidV7Generator implements BeforeExecutionGenerator {
+
+    @Override
+    public Object generate(SharedSessionContractImplementor session, Object owner, Object currentValue, EventType eventType) {
+        return generate();
+    }
+
+    @Override
+    public EnumSet<EventType> getEventTypes() {
+        return EnumSet.of(EventType.INSERT);
+    }
+
+    public static UUID generate(){
+        // Id không phải là bí mật, không cần SecureRandom (bị synchronized khi nhiều thread cùng insert)
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+
+        long timestamp = System.currentTimeMillis();
+        // unix_ts_ms (48) | ver = 7 (4) | rand_a (12)
+        long mostSigBits = (timestamp << 16) | 0x7000L | (random.nextLong() & 0x0FFFL);
+        // var = 10 (2) | rand_b (62)
+        long leastSigBits = (random.nextLong() & 0x3FFFFFFFFFFFFFFFL) | 0x8000000000000000L;
+
+        return new UUID(mostSigBits, leastSigBits);
+    }
+}
@@ -20,6 +20,11 @@ public enum ErrorCode {
     UNAUTHENTICATED(1006, "Unauthenticated", HttpStatus.UNAUTHORIZED),
     UNAUTHORIZED(1007, "Access denied", HttpStatus.FORBIDDEN),
     INVALID_DOB(1008, "Your age must be at least {min}", HttpStatus.BAD_REQUEST),
+    BATCH_TOO_LARGE(1010, "Too many tokens in one batch!", HttpStatus.BAD_REQUEST),
+    TOO_MANY_REQUESTS(1012, "Server is busy, please try again later!", HttpStatus.TOO_MANY_REQUESTS),
+    INVALID_PAGE_SIZE(1013, "Invalid page size!", HttpStatus.BAD_REQUEST),
+    INVALID_RECORD(1014, "Invalid record format!", HttpStatus.BAD_REQUEST),
+    INVALID_CURSOR(1015, "Invalid cursor!", HttpStatus.BAD_REQUEST),
     ;
 
     int code;
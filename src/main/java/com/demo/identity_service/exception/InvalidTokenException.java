@@ -0,0 +1,30 @@
+package com.demo.identity_service.exception;
+
+/**
+ * Token bị từ chối, luôn trả về UNAUTHENTICATED cho client
+ * - Lý do từ chối chỉ dùng cho metrics/log, không trả về cho client
+ */
+public class InvalidTokenException extends AppException {
+
+    private final Reason reason;
+
+    public InvalidTokenException(Reason reason) {
+        super(ErrorCode.UNAUTHENTICATED);
+        this.reason = reason;
+    }
+
+    public Reason getReason() {
+        return reason;
+    }
+
+    public enum Reason {
+        // Không parse được token
+        MALFORMED,
+        // kid không tồn tại, khóa đã hết rotation-window hoặc thuật toán không hỗ trợ
+        UNKNOWN_KEY,
+        BAD_SIGNATURE,
+        EXPIRED,
+        // Đã logout/refresh hoặc "đăng xuất mọi nơi"
+        REVOKED
+    }
+}
@@ -0,0 +1,18 @@
+package com.demo.identity_service.repository;
+
+import com.demo.identity_service.entity.AuthoritiesVersion;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
+
+@Repository
+public interface AuthoritiesVersionRepository extends JpaRepository<AuthoritiesVersion, String> {
+    // Tăng version ngay trên DB, không đọc trước để không ghi đè lần tăng của instance khác
+    @Modifying
+    @Transactional
+    @Query("update AuthoritiesVersion v set v.version = v.version + 1 where v.id = :id")
+    int incrementVersion(@Param("id") String id);
+}
@@ -1,13 +1,48 @@
 package com.demo.identity_service.repository;
 
 import com.demo.identity_service.entity.InvalidatedToken;
+import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
 
 import java.time.LocalDate;
+import java.util.Collection;
 import java.util.Date;
+import java.util.List;
 
 @Repository
 public interface InvalidatedTokenRepository extends JpaRepository<InvalidatedToken, String> {
-    void deleteByExpirationTimeBefore(Date time);
+    /**
+     * Lấy id của một batch token đã hết hạn theo thứ tự index (expirationTime, id)
+     * - Chỉ select id, không load entity
+     * - Batch trước đã bị xóa nên mỗi lần chỉ cần đọc từ đầu index, không dùng OFFSET
+     */
+    @Query("select t.id from InvalidatedToken t " +
+            "where t.expirationTime < :before " +
+            "order by t.expirationTime, t.id")
+    List<String> findExpiredIds(@Param("before") Date before, Pageable pageable);
+
+    // Xóa theo khóa chính bằng một câu lệnh, mỗi batch là một transaction ngắn
+    @Modifying
+    @Transactional
+    @Query("delete from InvalidatedToken t where t.id in :ids")
+    int deleteAllByIdIn(@Param("ids") Collection<String> ids);
+
+    // Chỉ lấy id để build bộ lọc Bloom, không load entity
+    @Query("select t.id from InvalidatedToken t where t.expirationTime > :time")
+    List<String> findIdsByExpirationTimeAfter(@Param("time") Date time);
+
+    long countByExpirationTimeAfter(Date time);
+
+    // Các token được thu hồi từ thời điểm since, kể cả trên instance khác
+    @Query("select t.id from InvalidatedToken t where t.revokedAt >= :since")
+    List<String> findIdsRevokedSince(@Param("since") Date since);
+
+    // Kiểm tra nhiều jti trong một truy vấn IN (...)
+    @Query("select t.id from InvalidatedToken t where t.id in :ids")
+    List<String> findExistingIds(@Param("ids") Collection<String> ids);
 }
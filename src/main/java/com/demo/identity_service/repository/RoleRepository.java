@@ -1,10 +1,35 @@
 package com.demo.identity_service.repository;
 
+import com.demo.identity_service.dto.projection.RolePermissionRow;
 import com.demo.identity_service.entity.Role;
+import jakarta.persistence.QueryHint;
+import org.hibernate.jpa.HibernateHints;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
+import java.util.Collection;
+import java.util.List;
+
 @Repository
 public interface RoleRepository extends JpaRepository<Role, String> {
+    // Kết quả được lưu trong query cache, tự bị loại khi bảng role thay đổi qua Hibernate
+    @Override
+    @QueryHints(@QueryHint(name = HibernateHints.HINT_CACHEABLE, value = "true"))
+    List<Role> findAll();
+
+    @Override
+    @QueryHints(@QueryHint(name = HibernateHints.HINT_CACHEABLE, value = "true"))
+    List<Role> findAllById(Iterable<String> ids);
 
+    /**
+     * Tên permission của các role trong một truy vấn, dùng khi RoleScopeCache chưa có role
+     * - Mỗi dòng là một cặp (role, permission), role không có permission vẫn trả về một dòng
+     */
+    @Query("select r.name as roleName, p.name as permissionName " +
+            "from Role r left join r.permissions p " +
+            "where r.name in :names")
+    List<RolePermissionRow> findPermissionRows(@Param("names") Collection<String> names);
 }
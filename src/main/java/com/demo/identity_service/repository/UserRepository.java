@@ -1,13 +1,80 @@
 package com.demo.identity_service.repository;
 
+import com.demo.identity_service.dto.projection.UserAuthorityRow;
+import com.demo.identity_service.dto.projection.UserExportRow;
+import com.demo.identity_service.dto.response.UserResponse;
 import com.demo.identity_service.entity.User;
+import jakarta.persistence.QueryHint;
+import org.hibernate.jpa.HibernateHints;
+import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
 
+import java.util.Collection;
+import java.util.List;
 import java.util.Optional;
+import java.util.Set;
+import java.util.UUID;
+import java.util.stream.Stream;
 
 @Repository
-public interface UserRepository extends JpaRepository<User, String> {
+public interface UserRepository extends JpaRepository<User, UUID> {
     boolean existsByUsername(String username);
     Optional<User> findByUsername(String username);
+
+    // Các username đã tồn tại trong danh sách, dùng khi import hàng loạt
+    @Query("select u.username from User u where u.username in :usernames")
+    Set<String> findExistingUsernames(@Param("usernames") Collection<String> usernames);
+
+    /**
+     * Load user cùng tên các role trong một truy vấn, dùng cho đăng nhập và refresh
+     * - Mỗi dòng là một role, user không có role vẫn trả về một dòng
+     * - Không join permission: RoleScopeCache giữ permission của từng role
+     */
+    @Query("select u.id as id, u.username as username, u.password as password, r.name as roleName " +
+            "from User u left join u.roles r " +
+            "where u.username = :username")
+    List<UserAuthorityRow> findAuthoritiesByUsername(@Param("username") String username);
+
+    /**
+     * Trang đầu tiên của danh sách user, sắp xếp theo id
+     */
+    @Query("select new com.demo.identity_service.dto.response.UserResponse(" +
+            "u.id, u.username, u.firstName, u.lastName, u.dob) " +
+            "from User u order by u.id")
+    List<UserResponse> findPage(Pageable pageable);
+
+    /**
+     * Các trang tiếp theo: keyset theo id, không dùng offset nên tốc độ không phụ thuộc vị trí trang
+     */
+    @Query("select new com.demo.identity_service.dto.response.UserResponse(" +
+            "u.id, u.username, u.firstName, u.lastName, u.dob) " +
+            "from User u where u.id > :cursor order by u.id")
+    List<UserResponse> findPageAfter(@Param("cursor") UUID cursor, Pageable pageable);
+
+    /**
+     * Đọc toàn bộ user cùng tên role để export, sắp xếp theo id để gộp các dòng của cùng một user
+     * - Kết quả được đọc dần theo fetch size, phải được gọi trong transaction và đóng Stream sau khi dùng
+     */
+    @QueryHints({
+            @QueryHint(name = HibernateHints.HINT_FETCH_SIZE, value = "500"),
+            @QueryHint(name = HibernateHints.HINT_READ_ONLY, value = "true")
+    })
+    @Query("select u.id as id, u.username as username, u.firstName as firstName, " +
+            "u.lastName as lastName, u.dob as dob, r.name as roleName " +
+            "from User u left join u.roles r order by u.id")
+    Stream<UserExportRow> streamAllForExport();
+
+    // Chỉ cập nhật khi mật khẩu chưa bị đổi bởi request khác
+    @Modifying
+    @Transactional
+    @Query("update User u set u.password = :newPassword where u.id = :id and u.password = :oldPassword")
+    int updatePassword(@Param("id") UUID id,
+                       @Param("oldPassword") String oldPassword,
+                       @Param("newPassword") String newPassword);
 }
\ No newline at end of file
@@ -0,0 +1,20 @@
+package com.demo.identity_service.repository;
+
+import com.demo.identity_service.entity.UserTokenEpoch;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.util.UUID;
+
+@Repository
+public interface UserTokenEpochRepository extends JpaRepository<UserTokenEpoch, UUID> {
+    // Tăng epoch ngay trên DB, không đọc trước để không ghi đè lần tăng của instance khác
+    @Modifying
+    @Transactional
+    @Query("update UserTokenEpoch e set e.epoch = e.epoch + 1 where e.userId = :userId")
+    int incrementEpoch(@Param("userId") UUID userId);
+}
@@ -0,0 +1,134 @@
+package com.demo.identity_service.service;
+
+import com.demo.identity_service.exception.InvalidTokenException;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import lombok.AccessLevel;
+import lombok.experimental.FieldDefaults;
+import org.springframework.stereotype.Component;
+
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.Objects;
+
+/**
+ * Các metric của luồng xác thực, dùng chung cho AuthenticationService, TokenVerifier,
+ * CustomJWTDecoder và RoleScopeCache
+ * - Timer có percentile histogram để tính p99 trên Prometheus (histogram_quantile)
+ * - Kết quả introspect được đếm theo lý do từ chối (InvalidTokenException.Reason)
+ * - Tỉ lệ hit của cache = hit / (hit + miss) của identity.auth.cache.lookups
+ */
+@Component
+@FieldDefaults(level = AccessLevel.PRIVATE, makeFinal = true)
+public class AuthMetrics {
+    Timer tokenMint;
+    Timer signatureVerify;
+    Timer revocationLookup;
+    Timer scopeBuild;
+    Timer refresh;
+    Timer logout;
+
+    Counter verifiedTokenCacheHits;
+    Counter verifiedTokenCacheMisses;
+    Counter roleScopeCacheHits;
+    Counter roleScopeCacheMisses;
+
+    // Refresh dùng lại scope của token cũ hoặc phải load lại user
+    Counter refreshScopeReused;
+    Counter refreshScopeReloaded;
+
+    // Token hợp lệ và token bị từ chối theo từng lý do
+    Counter validIntrospections;
+    Map<InvalidTokenException.Reason, Counter> invalidIntrospections = new EnumMap<>(InvalidTokenException.Reason.class);
+
+    public AuthMetrics(MeterRegistry meterRegistry) {
+
+        this.tokenMint = timer("identity.auth.token.mint", meterRegistry);
+        this.signatureVerify = timer("identity.auth.token.verify", meterRegistry);
+        this.revocationLookup = timer("identity.auth.revocation.lookup", meterRegistry);
+        this.scopeBuild = timer("identity.auth.scope.build", meterRegistry);
+        this.refresh = timer("identity.auth.refresh", meterRegistry);
+        this.logout = timer("identity.auth.logout", meterRegistry);
+
+        this.verifiedTokenCacheHits = cacheCounter("verified-token", "hit", meterRegistry);
+        this.verifiedTokenCacheMisses = cacheCounter("verified-token", "miss", meterRegistry);
+        this.roleScopeCacheHits = cacheCounter("role-scope", "hit", meterRegistry);
+        this.roleScopeCacheMisses = cacheCounter("role-scope", "miss", meterRegistry);
+
+        this.refreshScopeReused = Counter.builder("identity.auth.refresh.scope")
+                .tag("result", "reused")
+                .register(meterRegistry);
+        this.refreshScopeReloaded = Counter.builder("identity.auth.refresh.scope")
+                .tag("result", "reloaded")
+                .register(meterRegistry);
+
+        this.validIntrospections = Counter.builder("identity.auth.introspections")
+                .tag("result", "valid")
+                .tag("reason", "NONE")
+                .register(meterRegistry);
+        for(InvalidTokenException.Reason reason : InvalidTokenException.Reason.values()){
+            invalidIntrospections.put(reason, Counter.builder("identity.auth.introspections")
+                    .tag("result", "invalid")
+                    .tag("reason", reason.name())
+                    .register(meterRegistry));
+        }
+    }
+
+    public Timer tokenMint(){
+        return tokenMint;
+    }
+
+    public Timer signatureVerify(){
+        return signatureVerify;
+    }
+
+    public Timer revocationLookup(){
+        return revocationLookup;
+    }
+
+    public Timer scopeBuild(){
+        return scopeBuild;
+    }
+
+    public Timer refresh(){
+        return refresh;
+    }
+
+    public Timer logout(){
+        return logout;
+    }
+
+    public void verifiedTokenCacheLookup(boolean hit){
+        (hit ? verifiedTokenCacheHits : verifiedTokenCacheMisses).increment();
+    }
+
+    public void roleScopeCacheLookup(boolean hit){
+        (hit ? roleScopeCacheHits : roleScopeCacheMisses).increment();
+    }
+
+    public void refreshScope(boolean reused){
+        (reused ? refreshScopeReused : refreshScopeReloaded).increment();
+    }
+
+    /**
+     * Đếm kết quả introspect
+     * @param reason null nếu token hợp lệ, ngược lại là lý do token bị từ chối
+     */
+    public void introspection(InvalidTokenException.Reason reason){
+        (Objects.isNull(reason) ? validIntrospections : invalidIntrospections.get(reason)).increment();
+    }
+
+    private static Timer timer(String name, MeterRegistry meterRegistry){
+        return Timer.builder(name)
+                .publishPercentileHistogram()
+                .register(meterRegistry);
+    }
+
+    private static Counter cacheCounter(String cache, String result, MeterRegistry meterRegistry){
+        return Counter.builder("identity.auth.cache.lookups")
+                .tag("cache", cache)
+                .tag("result", result)
+                .register(meterRegistry);
+    }
+}
@@ -1,30 +1,31 @@
 package com.demo.identity_service.service;
 
+import com.demo.identity_service.configuration.JwtKeyRing;
+import com.demo.identity_service.dto.projection.UserAuthorities;
 import com.demo.identity_service.dto.request.AuthenticationRequest;
+import com.demo.identity_service.dto.request.IntrospectBatchRequest;
 import com.demo.identity_service.dto.request.IntrospectRequest;
 import com.demo.identity_service.dto.request.LogOutRequest;
 import com.demo.identity_service.dto.request.RefreshRequest;
 import com.demo.identity_service.dto.response.AuthenticationResponse;
 import com.demo.identity_service.dto.response.IntrospectResponse;
-import com.demo.identity_service.entity.InvalidatedToken;
-import com.demo.identity_service.entity.User;
+import com.demo.identity_service.dto.response.TokenEpochResponse;
 import com.demo.identity_service.exception.AppException;
 import com.demo.identity_service.exception.ErrorCode;
-import com.demo.identity_service.repository.InvalidatedTokenRepository;
+import com.demo.identity_service.exception.InvalidTokenException;
 import com.demo.identity_service.repository.UserRepository;
 import com.nimbusds.jose.*;
-import com.nimbusds.jose.crypto.MACSigner;
-import com.nimbusds.jose.crypto.MACVerifier;
 import com.nimbusds.jwt.JWTClaimsSet;
-import com.nimbusds.jwt.SignedJWT;
+import io.micrometer.core.instrument.Timer;
 import lombok.AccessLevel;
 import lombok.RequiredArgsConstructor;
 import lombok.experimental.FieldDefaults;
 import lombok.experimental.NonFinal;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Value;
-import org.springframework.security.crypto.bcrypt.BCryptPasswordEncoder;
-import org.springframework.security.crypto.password.PasswordEncoder;
+import org.springframework.security.access.prepost.PreAuthorize;
+import org.springframework.security.core.context.SecurityContextHolder;
+import org.springframework.security.oauth2.jwt.Jwt;
 import org.springframework.stereotype.Service;
 import org.springframework.util.CollectionUtils;
 
@@ -32,6 +33,8 @@ import java.text.ParseException;
 import java.time.Instant;
 import java.time.temporal.ChronoUnit;
 import java.util.Date;
+import java.util.List;
+import java.util.Objects;
 import java.util.StringJoiner;
 import java.util.UUID;
 
@@ -47,20 +50,43 @@ import java.util.UUID;
 @RequiredArgsConstructor
 @FieldDefaults(level = AccessLevel.PRIVATE, makeFinal = true)
 public class AuthenticationService {
+    private static final String SCOPE_CLAIM = "scope";
+
     // Repository để truy vấn thông tin user
     UserRepository userRepository;
-    // Repository để quản lý các token đã vô hiệu hóa
-    InvalidatedTokenRepository invalidatedTokenRepository;
+    // Cache các JWT đã xác thực, cần xóa entry khi token bị thu hồi
+    VerifiedTokenCache verifiedTokenCache;
+    // Thu hồi token ngay trong bộ nhớ, ghi xuống DB theo batch
+    InvalidatedTokenWriter invalidatedTokenWriter;
+    // Pipeline parse + verify token dùng chung
+    TokenVerifier tokenVerifier;
+    // Các khóa ký/verify JWT được khởi tạo sẵn
+    JwtKeyRing jwtKeyRing;
+    // Mã hóa/so khớp mật khẩu trên thread pool riêng
+    PasswordHasher passwordHasher;
+    // Cache scope đã build sẵn cho từng role
+    RoleScopeCache roleScopeCache;
+    // Từ điển permission cho claim perm dạng bitset
+    PermissionDictionary permissionDictionary;
+    // Epoch token theo user cho "đăng xuất mọi nơi"
+    TokenEpochStore tokenEpochStore;
+    // Phiên bản quyền của user, cho phép refresh không load lại user
+    AuthoritiesVersionStore authoritiesVersionStore;
+    // Timer/counter của luồng xác thực
+    AuthMetrics authMetrics;
 
     @NonFinal //viết annotation này để tránh bị inject vào constructor
-    @Value("${jwt.signerKey}")
-    protected String SIGNER_KEY; //Khóa bí mật để ký JWT
-
     @Value("${jwt.valid-duration}")
     protected long VALID_DURATION;
 
-    @Value("${jwt.refreshable-duration}")
-    protected long REFRESHABLE_DURATION;
+    @NonFinal
+    @Value("${jwt.introspect.batch-max-size:100}")
+    protected int BATCH_MAX_SIZE;
+
+    // true: scope chỉ chứa các role, permission được mã hóa thành bitset trong claim perm
+    @NonFinal
+    @Value("${jwt.scope.compact:false}")
+    protected boolean COMPACT_SCOPE;
 
     /**
      * Kiểm tra token có hợp lệ không
@@ -73,9 +99,14 @@ public class AuthenticationService {
         boolean isValid = true;
 
         try {
-            verifyToken(token, false);
-        }catch (AppException e){
+            tokenVerifier.verify(token, false);
+            authMetrics.introspection(null);
+        }catch (InvalidTokenException e){
             isValid = false;
+            authMetrics.introspection(e.getReason());
+        }catch (ParseException e){
+            authMetrics.introspection(InvalidTokenException.Reason.MALFORMED);
+            throw e;
         }
 
         return IntrospectResponse.builder()
@@ -84,47 +115,27 @@ public class AuthenticationService {
     }
 
     /**
-     * Xác thực JWT token
-     * @param token cần xác thực
-     * @return JWT đã được ký nếu hợp lệ
-     * @throws JOSEException nếu có lỗi xử lý JWT
-     * @throws ParseException nếu không parse được token
+     * Kiểm tra nhiều token trong một request
+     * @param request chứa danh sách token, tối đa jwt.introspect.batch-max-size
+     * @return kết quả kiểm tra theo đúng thứ tự token trong request
      */
-    private SignedJWT verifyToken(String token, boolean isRefresh) throws JOSEException, ParseException {
-        // Tạo verifier với khóa bí mật
-        JWSVerifier verifier = new MACVerifier(SIGNER_KEY.getBytes());
-
-        // Parse token thành SignedJWT
-        SignedJWT signedJWT = SignedJWT.parse(token);
-
-        // Lấy thời gian hết hạn
-        Date expriredTime = (isRefresh) ?
-                new Date(
-                        signedJWT.getJWTClaimsSet()
-                                .getIssueTime()
-                                .toInstant()
-                                .plus(REFRESHABLE_DURATION, ChronoUnit.SECONDS)
-                                .toEpochMilli()
-                )
-                : signedJWT.getJWTClaimsSet().getExpirationTime();
-
-        // Xác thực chữ ký
-        var verified = signedJWT.verify(verifier);
-
-        // Kiểm tra token có hợp lệ và chưa hết hạn
-        if(!verified && expriredTime.after(new Date())){
-            throw new AppException(ErrorCode.UNAUTHENTICATED);
-        }
+    public List<IntrospectResponse> introspectBatch(IntrospectBatchRequest request){
+        var tokens = request.getTokens();
 
-        // Kiểm tra token có trong danh sách đã vô hiệu hóa không
-        if(invalidatedTokenRepository.existsById(signedJWT
-                .getJWTClaimsSet()
-                .getJWTID())
-        ){
-            throw new AppException(ErrorCode.UNAUTHENTICATED);
+        if(CollectionUtils.isEmpty(tokens)) return List.of();
+
+        if(tokens.size() > BATCH_MAX_SIZE){
+            throw new AppException(ErrorCode.BATCH_TOO_LARGE);
         }
 
-        return signedJWT;
+        return tokenVerifier.verifyAll(tokens).stream()
+                .map(reason -> {
+                    authMetrics.introspection(reason);
+                    return IntrospectResponse.builder()
+                            .valid(Objects.isNull(reason))
+                            .build();
+                })
+                .toList();
     }
 
     /**
@@ -133,18 +144,23 @@ public class AuthenticationService {
      * @return token nếu xác thực thành công
      */
     public AuthenticationResponse authenticate(AuthenticationRequest request){
-        // Tìm user theo username
-        var user = userRepository.findByUsername(request.getUsername())
+        // Tìm user cùng tên các role theo username trong một truy vấn, permission lấy từ RoleScopeCache
+        long scopeGeneration = roleScopeCache.generation();
+        String authoritiesVersion = authoritiesVersionStore.current(request.getUsername());
+        var user = UserAuthorities.from(userRepository.findAuthoritiesByUsername(request.getUsername()))
                 .orElseThrow(() -> new AppException(ErrorCode.USER_NOT_EXISTED));
 
-        // Kiểm tra mật khẩu
-        PasswordEncoder passwordEncoder = new BCryptPasswordEncoder(10);
-        boolean authenticated = passwordEncoder.matches(request.getPassword(), user.getPassword());
+        // Kiểm tra mật khẩu trên thread pool riêng của bcrypt
+        boolean authenticated = passwordHasher.matches(request.getPassword(), user.password());
 
         if(!authenticated) throw new AppException(ErrorCode.UNAUTHENTICATED);
 
+        // Mã hóa lại ở chế độ nền nếu cost bcrypt đã lưu thấp hơn cost hiện tại
+        passwordHasher.rehashIfNeeded(request.getPassword(), user.password(),
+                newPassword -> userRepository.updatePassword(user.id(), user.password(), newPassword));
+
         // Tạo token mới
-        var token = generateToken(user);
+        var token = generateToken(user, scopeGeneration, authoritiesVersion);
 
         return AuthenticationResponse.builder()
                 .token(token)
@@ -155,19 +171,38 @@ public class AuthenticationService {
     /**
      * Tạo JWT token cho user
      * @param user cần tạo token
+     * @param scopeGeneration generation của RoleScopeCache lấy trước khi load user
+     * @param authoritiesVersion phiên bản quyền lấy trước khi load user, null nếu chưa có
      * @return JWT token dạng string
      */
-    private String generateToken(User user){
-        JWSHeader header = new JWSHeader(JWSAlgorithm.HS512); //Build header sử dụng thuật toán HS512 với lớp JWSHeader
+    // package-private để benchmark (src/jmh) gọi trực tiếp
+    String generateToken(UserAuthorities user, long scopeGeneration, String authoritiesVersion){
+        String permissions = COMPACT_SCOPE ? encodePermissions(user, scopeGeneration) : null;
+        String scope = Objects.nonNull(permissions) ? buildRoleScope(user) : buildScope(user, scopeGeneration);
+
+        return signToken(user.username(), user.id().toString(), scope, permissions, authoritiesVersion);
+    }
+
+    /**
+     * Ký token từ các claim đã có, dùng chung cho đăng nhập và refresh
+     */
+    private String signToken(String username, String userId, String scope, String permissions, String authoritiesVersion){
+        Timer.Sample sample = Timer.start();
+
+        JWSHeader header = jwtKeyRing.header(); //Build header HS512 có kid của khóa hiện tại
 
         JWTClaimsSet jwtClaimsSet = new JWTClaimsSet.Builder() //Sử dụng Lớp JWTClaimsSet Builder để set các claims bên trong payload
-                .subject(user.getUsername()) //Chứa đựng username đang đăng nhập
+                .subject(username) //Chứa đựng username đang đăng nhập
                 .issuer("identity-service.com") //Chứa domain của service
                 .issueTime(new Date()) //Chứa thời gian khởi tạo token
                 .expirationTime(new Date(
                         Instant.now().plus(VALID_DURATION, ChronoUnit.SECONDS).toEpochMilli() //Lấy ở thời điểm bây giờ và cộng thêm một giờ để lấy hạn, tính theo đơn vị mili trên s
                 )) //Chứa thời hạn token(ở đây là một tiếng)
-                .claim("scope", buildScope(user))
+                .claim(SCOPE_CLAIM, scope)
+                .claim(PermissionDictionary.CLAIM, permissions) //Bitset permission, chỉ có khi jwt.scope.compact=true
+                .claim(TokenEpochStore.USER_ID_CLAIM, userId) //Id user và epoch hiện tại, dùng cho "đăng xuất mọi nơi"
+                .claim(TokenEpochStore.EPOCH_CLAIM, tokenEpochStore.currentEpoch(userId))
+                .claim(AuthoritiesVersionStore.CLAIM, authoritiesVersion) //Phiên bản quyền ứng với scope
                 .jwtID(UUID.randomUUID().toString())
                 .build();
 
@@ -176,11 +211,13 @@ public class AuthenticationService {
         JWSObject jwsObject = new JWSObject(header, payload); //Tổng hợp vào một jwsObject
 
         try {
-            jwsObject.sign(new MACSigner(SIGNER_KEY.getBytes())); //Kí token bằng khóa bí mật
+            jwsObject.sign(jwtKeyRing.signer()); //Kí token bằng khóa bí mật hiện tại
             return jwsObject.serialize(); //Chuyển đổi đối tượng jwsObject thành một String sử dụng hàm serialize
         } catch (JOSEException e) {
             log.error("Cannot create token", e);
             throw new RuntimeException(e);
+        } finally {
+            sample.stop(authMetrics.tokenMint());
         }
     }
 
@@ -191,28 +228,53 @@ public class AuthenticationService {
      */
     public AuthenticationResponse refreshToken(RefreshRequest request)
             throws ParseException, JOSEException {
-        // Xác thực token cũ
-        var signJWT = verifyToken(request.getToken(), true);
-        var jwtId = signJWT.getJWTClaimsSet().getJWTID();
-        var expirationTime = signJWT.getJWTClaimsSet().getExpirationTime();
+        Timer.Sample sample = Timer.start();
+        try {
+            return refresh(request);
+        } finally {
+            sample.stop(authMetrics.refresh());
+        }
+    }
 
-        // Vô hiệu hóa token cũ
-        InvalidatedToken invalidatedToken =
-                InvalidatedToken.builder()
-                        .id(jwtId)
-                        .expirationTime(expirationTime)
-                        .build();
+    private AuthenticationResponse refresh(RefreshRequest request) throws ParseException, JOSEException {
+        // Xác thực token cũ, claims chỉ được parse một lần
+        var claims = tokenVerifier.verify(request.getToken(), true).claims();
+        var jwtId = claims.getJWTID();
+        var expirationTime = claims.getExpirationTime();
 
-        invalidatedTokenRepository.save(invalidatedToken);
+        // Vô hiệu hóa token cũ
+        invalidatedTokenWriter.revoke(jwtId, expirationTime);
+        verifiedTokenCache.evict(jwtId, expirationTime);
 
         // Tạo token mới
-        var username = signJWT.getJWTClaimsSet().getSubject();
+        var username = claims.getSubject();
+        String authoritiesVersion = authoritiesVersionStore.current(username);
+
+        var userId = (String) claims.getClaim(TokenEpochStore.USER_ID_CLAIM);
+        var scope = (String) claims.getClaim(SCOPE_CLAIM);
+        var permissions = (String) claims.getClaim(PermissionDictionary.CLAIM);
+
+        // Quyền của user không đổi kể từ khi token cũ được tạo: dùng lại scope, không truy vấn user
+        // Claim perm chỉ được dùng lại khi version từ điển của nó vẫn còn giải mã được
+        if(Objects.nonNull(authoritiesVersion) && Objects.nonNull(userId) && Objects.nonNull(scope)
+                && authoritiesVersion.equals(claims.getClaim(AuthoritiesVersionStore.CLAIM))
+                && (Objects.isNull(permissions) || permissionDictionary.isKnown(permissions))){
+            authMetrics.refreshScope(true);
+
+            return AuthenticationResponse.builder()
+                    .token(signToken(username, userId, scope, permissions, authoritiesVersion))
+                    .authenticated(true)
+                    .build();
+        }
 
-        var user = userRepository.findByUsername(username).orElseThrow(
+        authMetrics.refreshScope(false);
+
+        long scopeGeneration = roleScopeCache.generation();
+        var user = UserAuthorities.from(userRepository.findAuthoritiesByUsername(username)).orElseThrow(
                 () -> new AppException(ErrorCode.UNAUTHENTICATED)
         );
 
-        var token = generateToken(user);
+        var token = generateToken(user, scopeGeneration, authoritiesVersion);
 
         return AuthenticationResponse.builder()
                 .token(token)
@@ -225,46 +287,74 @@ public class AuthenticationService {
      * @param request chứa token cần vô hiệu hóa
      */
     public void logout(LogOutRequest request) throws ParseException, JOSEException {
-        // Xác thực token
+        Timer.Sample sample = Timer.start();
 
+        // Xác thực token
         try {
-            var signToken = verifyToken(request.getToken(), true);
+            var claims = tokenVerifier.verify(request.getToken(), true).claims();
 
-            String jwtId = signToken.getJWTClaimsSet().getJWTID();
-            Date expirationTime = signToken.getJWTClaimsSet().getExpirationTime();
+            String jwtId = claims.getJWTID();
+            Date expirationTime = claims.getExpirationTime();
 
             // Lưu token vào danh sách đã vô hiệu hóa
-            InvalidatedToken invalidatedToken =
-                    InvalidatedToken.builder()
-                            .id(jwtId)
-                            .expirationTime(expirationTime)
-                            .build();
-
-            invalidatedTokenRepository.save(invalidatedToken);
+            invalidatedTokenWriter.revoke(jwtId, expirationTime);
+            verifiedTokenCache.evict(jwtId, expirationTime);
         }catch (AppException e){
             log.info("Token is not valid");
+        }finally {
+            sample.stop(authMetrics.logout());
         }
     }
 
+    /**
+     * Đăng xuất khỏi mọi thiết bị: thu hồi tất cả token đã cấp cho user đang đăng nhập
+     * - Chỉ tăng epoch của user (một lần ghi), không cần biết các token đã cấp
+     * @return epoch mới của user
+     */
+    public TokenEpochResponse logoutAll(){
+        var authentication = SecurityContextHolder.getContext().getAuthentication();
+
+        // Token cũ chưa có claim uid: tìm user theo username
+        String userId = authentication.getPrincipal() instanceof Jwt jwt
+                ? jwt.getClaimAsString(TokenEpochStore.USER_ID_CLAIM)
+                : null;
+        UUID id = Objects.nonNull(userId)
+                ? UUID.fromString(userId)
+                : userRepository.findByUsername(authentication.getName())
+                        .orElseThrow(() -> new AppException(ErrorCode.USER_NOT_EXISTED))
+                        .getId();
+
+        return TokenEpochResponse.builder()
+                .userId(id.toString())
+                .epoch(tokenEpochStore.bump(id))
+                .build();
+    }
+
     /**
      * Xây dựng scope từ roles và permissions của user
+     * - Đoạn "ROLE_x perm1 perm2 ..." của mỗi role được lấy từ RoleScopeCache
      * @param user cần lấy scope
      * @return chuỗi chứa các quyền, phân tách bằng dấu cách
      */
-    private String buildScope(User user){
-        StringJoiner stringJoiner = new StringJoiner(" ");
+    String buildScope(UserAuthorities user, long scopeGeneration){
+        return authMetrics.scopeBuild().record(() -> roleScopeCache.scopeOf(user, scopeGeneration));
+    }
 
-        // Thêm roles và permissions vào scope
-        if(!CollectionUtils.isEmpty(user.getRoles()))
-            user.getRoles().forEach(
-                role -> {
-                    stringJoiner.add("ROLE_" + role.getName());
-                    if(!CollectionUtils.isEmpty(role.getPermissions())){
-                        role.getPermissions().forEach(permission ->
-                                stringJoiner.add(permission.getName()));
-                    }
-                }
-        );
+    /**
+     * Scope dạng gọn: chỉ gồm "ROLE_x ROLE_y", permission nằm trong claim perm
+     */
+    private String buildRoleScope(UserAuthorities user){
+        StringJoiner stringJoiner = new StringJoiner(" ");
+        user.roleNames().forEach(roleName -> stringJoiner.add("ROLE_" + roleName));
         return stringJoiner.toString();
     }
+
+    /**
+     * Mã hóa toàn bộ permission của user thành claim perm
+     * @return claim perm, null nếu không mã hóa được (token dùng scope đầy đủ)
+     */
+    private String encodePermissions(UserAuthorities user, long scopeGeneration){
+        return authMetrics.scopeBuild().record(() ->
+                permissionDictionary.encode(roleScopeCache.permissionsOf(user, scopeGeneration)));
+    }
 }
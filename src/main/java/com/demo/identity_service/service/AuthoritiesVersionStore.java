@@ -0,0 +1,117 @@
+package com.demo.identity_service.service;
+
+import com.demo.identity_service.entity.AuthoritiesVersion;
+import com.demo.identity_service.repository.AuthoritiesVersionRepository;
+import lombok.AccessLevel;
+import lombok.RequiredArgsConstructor;
+import lombok.experimental.FieldDefaults;
+import lombok.experimental.NonFinal;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.context.event.ApplicationStartedEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Phiên bản quyền của user, gắn vào token ở claim av = "<version role/permission>.<version của user>"
+ * - /auth/refresh dùng lại claim scope của token cũ khi av vẫn khớp, không cần load lại user
+ * - Lấy av trước khi load quyền từ DB và chỉ tăng version sau khi thay đổi đã được lưu:
+ *   token không bao giờ mang av mới với scope cũ
+ * - Map trong bộ nhớ được load từ bảng authorities_version khi khởi động và load lại định kỳ,
+ *   thay đổi trên instance khác có hiệu lực sau tối đa một chu kỳ load
+ * - Version role/permission tăng (kể cả do instance khác): xóa RoleScopeCache để scope được build lại từ DB
+ */
+@Slf4j
+@Component
+@RequiredArgsConstructor
+@FieldDefaults(level = AccessLevel.PRIVATE, makeFinal = true)
+public class AuthoritiesVersionStore {
+    public static final String CLAIM = "av";
+
+    // Username tối thiểu 3 ký tự nên không trùng với user nào
+    private static final String ROLES_KEY = "*";
+
+    AuthoritiesVersionRepository authoritiesVersionRepository;
+    RoleScopeCache roleScopeCache;
+
+    // id -> version, id không có trong map có version = 0
+    Map<String, Long> versions = new ConcurrentHashMap<>();
+
+    @NonFinal
+    volatile boolean loaded;
+
+    /**
+     * Phiên bản quyền hiện tại của user
+     * @param username user cần lấy
+     * @return av, null khi chưa load xong (refresh luôn load lại user)
+     */
+    public String current(String username){
+        if(!loaded) return null;
+
+        return versions.getOrDefault(ROLES_KEY, 0L) + "." + versions.getOrDefault(username, 0L);
+    }
+
+    /**
+     * Roles của user vừa thay đổi hoặc user bị xóa, gọi sau khi thay đổi đã được lưu
+     */
+    public void userChanged(String username){
+        increment(username);
+    }
+
+    /**
+     * Role hoặc permission vừa thay đổi, gọi sau khi thay đổi đã được lưu
+     */
+    public void rolesChanged(){
+        increment(ROLES_KEY);
+    }
+
+    @EventListener(ApplicationStartedEvent.class)
+    public void onStartup(){
+        reload();
+    }
+
+    /**
+     * Load lại toàn bộ version từ DB
+     * - Version chỉ tăng: gộp vào map hiện tại và giữ giá trị lớn hơn
+     */
+    @Scheduled(fixedDelayString = "${jwt.refresh.authorities-reload-interval:30000}",
+            initialDelayString = "${jwt.refresh.authorities-reload-interval:30000}")
+    public void reload(){
+        authoritiesVersionRepository.findAll()
+                .forEach(version -> merge(version.getId(), version.getVersion()));
+        loaded = true;
+
+        log.debug("Authorities versions reloaded with {} entries", versions.size());
+    }
+
+    private void increment(String id){
+        if(authoritiesVersionRepository.incrementVersion(id) == 0){
+            try {
+                authoritiesVersionRepository.saveAndFlush(AuthoritiesVersion.builder()
+                        .id(id)
+                        .version(1)
+                        .build());
+            } catch (DataIntegrityViolationException e) {
+                // Instance khác vừa insert cùng id
+                authoritiesVersionRepository.incrementVersion(id);
+            }
+        }
+
+        authoritiesVersionRepository.findById(id)
+                .ifPresent(version -> merge(id, version.getVersion()));
+    }
+
+    private void merge(String id, long version){
+        long previous = versions.getOrDefault(id, 0L);
+        long current = versions.merge(id, version, Math::max);
+
+        // Role/permission đã thay đổi, có thể trên instance khác: các đoạn scope đang cache đã cũ
+        if(ROLES_KEY.equals(id) && current > previous){
+            roleScopeCache.clear();
+        }
+    }
+}
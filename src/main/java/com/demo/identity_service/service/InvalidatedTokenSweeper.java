@@ -0,0 +1,235 @@
+package com.demo.identity_service.service;
+
+import com.demo.identity_service.repository.InvalidatedTokenRepository;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import lombok.AccessLevel;
+import lombok.experimental.FieldDefaults;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.jdbc.core.ConnectionCallback;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.ZoneOffset;
+import java.time.format.DateTimeFormatter;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+import java.util.Objects;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Dọn dẹp bảng invalidated_token định kỳ
+ * - mode = batch: xóa theo từng batch nhỏ (chỉ đọc id theo index expirationTime), nghỉ giữa các batch
+ *   để không giữ lock lâu làm chậm các lệnh insert của logout/refresh
+ * - mode = partition: bảng được partition theo ngày (xem db/invalidated_token_partitioned.sql),
+ *   xóa nguyên partition đã hết hạn và tạo trước partition cho các ngày tới.
+ *   Mọi instance chạy cùng cron: chỉ instance lấy được named lock (GET_LOCK) chạy DDL, các instance khác bỏ qua
+ */
+@Slf4j
+@Component
+@FieldDefaults(level = AccessLevel.PRIVATE, makeFinal = true)
+public class InvalidatedTokenSweeper {
+    private static final String TABLE_NAME = "invalidated_token";
+    private static final String MAX_PARTITION = "pmax";
+    // Named lock của MySQL, giữ trên một connection trong suốt lần sweep partition
+    private static final String PARTITION_LOCK = "invalidated_token_partition_sweep";
+    // TO_DAYS('1970-01-01') trong MySQL
+    private static final long EPOCH_TO_DAYS = 719528;
+    private static final DateTimeFormatter PARTITION_NAME = DateTimeFormatter.ofPattern("'p'yyyyMMdd");
+
+    InvalidatedTokenRepository invalidatedTokenRepository;
+    JdbcTemplate jdbcTemplate;
+
+    String mode;
+    int batchSize;
+    long pauseMillis;
+    int partitionsAhead;
+    long refreshableDuration;
+
+    Counter removedCounter;
+    Timer sweepTimer;
+
+    public InvalidatedTokenSweeper(InvalidatedTokenRepository invalidatedTokenRepository,
+                                   JdbcTemplate jdbcTemplate,
+                                   MeterRegistry meterRegistry,
+                                   @Value("${jwt.revocation.sweeper.mode:batch}") String mode,
+                                   @Value("${jwt.revocation.sweeper.batch-size:1000}") int batchSize,
+                                   @Value("${jwt.revocation.sweeper.pause:50}") long pauseMillis,
+                                   @Value("${jwt.revocation.sweeper.partitions-ahead:3}") int partitionsAhead,
+                                   @Value("${jwt.refreshable-duration}") long refreshableDuration) {
+        this.invalidatedTokenRepository = invalidatedTokenRepository;
+        this.jdbcTemplate = jdbcTemplate;
+        this.mode = mode;
+        this.batchSize = batchSize;
+        this.pauseMillis = pauseMillis;
+        this.partitionsAhead = partitionsAhead;
+        this.refreshableDuration = refreshableDuration;
+
+        this.removedCounter = Counter.builder("identity.revocation.sweeper.removed")
+                .tag("mode", mode)
+                .register(meterRegistry);
+        this.sweepTimer = Timer.builder("identity.revocation.sweeper.duration")
+                .tag("mode", mode)
+                .register(meterRegistry);
+    }
+
+    @Scheduled(cron = "${jwt.revocation.sweeper.cron:0 */10 * * * *}")
+    public void sweep(){
+        // Token đã thu hồi vẫn có thể được gửi lên /auth/refresh trong refreshable-duration,
+        // chỉ xóa những dòng đã quá khoảng thời gian này
+        Date cutoff = Date.from(Instant.now().minus(refreshableDuration, ChronoUnit.SECONDS));
+        long start = System.nanoTime();
+
+        long removed = "partition".equalsIgnoreCase(mode)
+                ? dropExpiredPartitions(cutoff)
+                : deleteInBatches(cutoff);
+
+        long elapsed = System.nanoTime() - start;
+        sweepTimer.record(elapsed, TimeUnit.NANOSECONDS);
+        removedCounter.increment(removed);
+
+        log.info("Invalidated token sweep ({}) removed {} rows in {} ms",
+                mode, removed, elapsed / 1_000_000);
+    }
+
+    /**
+     * Xóa theo batch, mỗi batch là một câu DELETE ... WHERE id IN (...) trong transaction riêng
+     * @param cutoff xóa các token hết hạn trước thời điểm này
+     * @return số dòng đã xóa
+     */
+    long deleteInBatches(Date cutoff){
+        long removed = 0;
+
+        while(true){
+            List<String> batch = invalidatedTokenRepository
+                    .findExpiredIds(cutoff, PageRequest.of(0, batchSize));
+
+            if(batch.isEmpty()) break;
+
+            int deleted = invalidatedTokenRepository.deleteAllByIdIn(batch);
+            removed += deleted;
+
+            // Không xóa được dòng nào (vd: instance khác vừa xóa cùng batch): dừng, lần chạy sau tiếp tục
+            if(batch.size() < batchSize || deleted == 0) break;
+
+            if(!pause()) break;
+        }
+
+        return removed;
+    }
+
+    /**
+     * Drop các partition có cận trên không vượt quá cutoff, sau đó tạo trước partition cho các ngày tới
+     * - Chỉ chạy khi lấy được GET_LOCK ngay (timeout 0): instance khác đang sweep thì bỏ qua lần này
+     * @param cutoff xóa các token hết hạn trước thời điểm này
+     * @return số dòng ước tính đã xóa (theo thống kê của information_schema)
+     */
+    long dropExpiredPartitions(Date cutoff){
+        // GET_LOCK/RELEASE_LOCK phải chạy trên cùng một connection, DDL chạy trên connection khác của pool
+        Long removed = jdbcTemplate.execute((ConnectionCallback<Long>) connection -> {
+            if(!namedLock(connection, "select get_lock(?, 0)")){
+                log.info("Partition sweep is running on another instance, skipping");
+                return 0L;
+            }
+
+            try {
+                return dropExpiredPartitionsLocked(cutoff);
+            } finally {
+                namedLock(connection, "select release_lock(?)");
+            }
+        });
+        return Objects.isNull(removed) ? 0 : removed;
+    }
+
+    private static boolean namedLock(Connection connection, String sql) throws SQLException {
+        try (PreparedStatement statement = connection.prepareStatement(sql)) {
+            statement.setString(1, PARTITION_LOCK);
+            try (ResultSet resultSet = statement.executeQuery()) {
+                return resultSet.next() && resultSet.getInt(1) == 1;
+            }
+        }
+    }
+
+    private long dropExpiredPartitionsLocked(Date cutoff){
+        long cutoffDays = LocalDate.ofInstant(cutoff.toInstant(), ZoneOffset.UTC).toEpochDay() + EPOCH_TO_DAYS;
+
+        List<Partition> partitions = jdbcTemplate.query(
+                "select partition_name, partition_description, table_rows " +
+                        "from information_schema.partitions " +
+                        "where table_schema = database() and table_name = ? and partition_name is not null " +
+                        "order by partition_ordinal_position",
+                (rs, rowNum) -> new Partition(
+                        rs.getString("partition_name"),
+                        rs.getString("partition_description"),
+                        rs.getLong("table_rows")),
+                TABLE_NAME);
+
+        // VALUES LESS THAN (n): mọi dòng trong partition có TO_DAYS(expiration_time) < n
+        List<Partition> expired = partitions.stream()
+                .filter(partition -> !MAX_PARTITION.equals(partition.name()))
+                .filter(partition -> Long.parseLong(partition.description()) <= cutoffDays)
+                .toList();
+
+        long removed = 0;
+        for(Partition partition : expired){
+            // Mỗi partition một lệnh DDL ngắn, nghỉ giữa các lần drop
+            jdbcTemplate.execute("alter table " + TABLE_NAME + " drop partition " + partition.name());
+            removed += partition.rows();
+
+            if(!pause()) break;
+        }
+
+        createUpcomingPartitions(partitions);
+
+        return removed;
+    }
+
+    private void createUpcomingPartitions(List<Partition> partitions){
+        long lastBound = partitions.stream()
+                .filter(partition -> !MAX_PARTITION.equals(partition.name()))
+                .mapToLong(partition -> Long.parseLong(partition.description()))
+                .max()
+                .orElse(LocalDate.now(ZoneOffset.UTC).toEpochDay() + EPOCH_TO_DAYS);
+
+        long targetBound = LocalDate.now(ZoneOffset.UTC).plusDays(partitionsAhead + 1L).toEpochDay() + EPOCH_TO_DAYS;
+
+        List<String> definitions = new ArrayList<>();
+        for(long bound = lastBound + 1; bound <= targetBound; bound++){
+            // Partition pYYYYMMDD chứa các token hết hạn trong ngày YYYY-MM-DD
+            LocalDate day = LocalDate.ofEpochDay(bound - EPOCH_TO_DAYS - 1);
+            definitions.add("partition " + day.format(PARTITION_NAME) + " values less than (" + bound + ")");
+        }
+
+        if(definitions.isEmpty()) return;
+
+        definitions.add("partition " + MAX_PARTITION + " values less than maxvalue");
+        jdbcTemplate.execute("alter table " + TABLE_NAME + " reorganize partition " + MAX_PARTITION + " into ("
+                + String.join(", ", definitions) + ")");
+    }
+
+    private boolean pause(){
+        if(pauseMillis <= 0) return true;
+
+        try {
+            Thread.sleep(pauseMillis);
+            return true;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return false;
+        }
+    }
+
+    private record Partition(String name, String description, long rows) {}
+}
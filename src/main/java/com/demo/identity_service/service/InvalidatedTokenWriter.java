@@ -0,0 +1,247 @@
+package com.demo.identity_service.service;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.AccessLevel;
+import lombok.experimental.FieldDefaults;
+import lombok.experimental.NonFinal;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DataAccessException;
+import org.springframework.dao.DuplicateKeyException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+
+import java.sql.Timestamp;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Date;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.stream.Collectors;
+
+/**
+ * Ghi các token bị thu hồi (logout/refresh) vào bảng invalidated_token theo batch
+ * - Token có hiệu lực thu hồi ngay trong bộ nhớ (isPending), TokenVerifier kiểm tra trước khi tra Bloom filter/DB
+ * - Một thread nền insert các dòng đang chờ theo batch khi đủ batch-size hoặc sau mỗi flush-interval
+ *   (rewriteBatchedStatements=true: MySQL nhận một câu INSERT nhiều dòng)
+ * - Ghi lỗi: giữ lại trong bộ nhớ và thử lại ở lần flush sau
+ * - Khi tắt ứng dụng, các dòng còn lại được ghi hết trước khi đóng DataSource
+ * - Instance khác chỉ thấy token bị thu hồi sau khi đã được ghi xuống DB và RevokedTokenFilter.sync() đọc được
+ */
+@Slf4j
+@Component
+@FieldDefaults(level = AccessLevel.PRIVATE, makeFinal = true)
+public class InvalidatedTokenWriter {
+    private static final String INSERT_SQL =
+            "insert into invalidated_token (id, expiration_time, revoked_at) values (?, ?, ?)";
+
+    JdbcTemplate jdbcTemplate;
+    RevokedTokenFilter revokedTokenFilter;
+
+    int batchSize;
+    long flushIntervalMillis;
+    long retryDelayMillis;
+
+    // jti -> exp của các token đã thu hồi nhưng chưa được ghi xuống DB
+    Map<String, Date> pending = new ConcurrentHashMap<>();
+    BlockingQueue<String> queue = new LinkedBlockingQueue<>();
+    // Thread ghi nền và flush() gọi từ bên ngoài không ghi cùng lúc
+    ReentrantLock writeLock = new ReentrantLock();
+
+    Counter writtenRows;
+    Counter failedFlushes;
+    Timer flushTimer;
+
+    @NonFinal
+    volatile boolean running;
+
+    @NonFinal
+    Thread writer;
+
+    public InvalidatedTokenWriter(JdbcTemplate jdbcTemplate,
+                                  RevokedTokenFilter revokedTokenFilter,
+                                  MeterRegistry meterRegistry,
+                                  @Value("${jwt.revocation.write-behind.batch-size:500}") int batchSize,
+                                  @Value("${jwt.revocation.write-behind.flush-interval:200}") long flushIntervalMillis,
+                                  @Value("${jwt.revocation.write-behind.retry-delay:1000}") long retryDelayMillis) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.revokedTokenFilter = revokedTokenFilter;
+        this.batchSize = batchSize;
+        this.flushIntervalMillis = flushIntervalMillis;
+        this.retryDelayMillis = retryDelayMillis;
+
+        this.writtenRows = Counter.builder("identity.revocation.writer.rows")
+                .register(meterRegistry);
+        this.failedFlushes = Counter.builder("identity.revocation.writer.failures")
+                .register(meterRegistry);
+        this.flushTimer = Timer.builder("identity.revocation.writer.flush")
+                .register(meterRegistry);
+
+        Gauge.builder("identity.revocation.writer.pending", pending, Map::size)
+                .register(meterRegistry);
+    }
+
+    /**
+     * Thu hồi token: có hiệu lực ngay trên instance này, được ghi xuống DB ở lần flush tiếp theo
+     * @param jwtId jti của token
+     * @param expirationTime thời gian hết hạn của token
+     */
+    public void revoke(String jwtId, Date expirationTime){
+        if(Objects.isNull(pending.putIfAbsent(jwtId, expirationTime))){
+            queue.add(jwtId);
+        }
+        revokedTokenFilter.markRevoked(jwtId);
+
+        // Đủ một batch: đánh thức thread ghi, không chờ hết flush-interval
+        if(queue.size() >= batchSize){
+            LockSupport.unpark(writer);
+        }
+    }
+
+    /**
+     * Token đã bị thu hồi nhưng chưa được ghi xuống DB
+     */
+    public boolean isPending(String jwtId){
+        return pending.containsKey(jwtId);
+    }
+
+    /**
+     * Các jti trong danh sách đã bị thu hồi nhưng chưa được ghi xuống DB
+     */
+    public Set<String> findPending(Collection<String> jwtIds){
+        if(pending.isEmpty()) return Set.of();
+
+        return jwtIds.stream()
+                .filter(pending::containsKey)
+                .collect(Collectors.toSet());
+    }
+
+    @PostConstruct
+    void start(){
+        running = true;
+        writer = new Thread(this::run, "invalidated-token-writer");
+        writer.setDaemon(true);
+        writer.start();
+    }
+
+    /**
+     * Dừng thread ghi và ghi hết các dòng còn lại trước khi DataSource bị đóng
+     */
+    @PreDestroy
+    public void shutdown(){
+        running = false;
+
+        if(Objects.nonNull(writer)){
+            writer.interrupt();
+            try {
+                writer.join(TimeUnit.SECONDS.toMillis(5));
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+
+        flush();
+        if(!pending.isEmpty()){
+            log.error("{} revoked tokens could not be written to invalidated_token", pending.size());
+        }
+    }
+
+    /**
+     * Ghi ngay mọi dòng đang chờ, mỗi batch tối đa batch-size dòng
+     * @return false nếu một batch ghi lỗi (các dòng được giữ lại để thử lại)
+     */
+    public boolean flush(){
+        writeLock.lock();
+        try {
+            List<String> batch = new ArrayList<>(Math.min(batchSize, queue.size()));
+            while(queue.drainTo(batch, batchSize) > 0){
+                if(!write(batch)) return false;
+                batch.clear();
+            }
+            return true;
+        } finally {
+            writeLock.unlock();
+        }
+    }
+
+    private void run(){
+        long flushIntervalNanos = TimeUnit.MILLISECONDS.toNanos(flushIntervalMillis);
+
+        while(running){
+            try {
+                // Ghi sau mỗi flush-interval, hoặc sớm hơn khi revoke() thấy đã đủ một batch
+                LockSupport.parkNanos(this, flushIntervalNanos);
+                if(!running) return;
+
+                if(!flush()) Thread.sleep(retryDelayMillis);
+            } catch (InterruptedException e) {
+                // shutdown() sẽ ghi nốt các dòng còn lại
+                return;
+            } catch (RuntimeException e) {
+                log.error("Invalidated token writer failed", e);
+            }
+        }
+    }
+
+    /**
+     * Ghi một batch, thất bại thì đưa các dòng trở lại hàng đợi
+     * @return true nếu đã ghi xong
+     */
+    private boolean write(List<String> jwtIds){
+        long start = System.nanoTime();
+        try {
+            // revoked_at = thời điểm ghi: gần nhất với lúc dòng được commit và các instance khác nhìn thấy
+            Timestamp revokedAt = new Timestamp(System.currentTimeMillis());
+            List<Object[]> rows = new ArrayList<>(jwtIds.size());
+            for(String jwtId : jwtIds){
+                Date expirationTime = pending.get(jwtId);
+                rows.add(new Object[]{jwtId,
+                        Objects.isNull(expirationTime) ? null : new Timestamp(expirationTime.getTime()),
+                        revokedAt});
+            }
+
+            try {
+                jdbcTemplate.batchUpdate(INSERT_SQL, rows);
+            } catch (DuplicateKeyException e) {
+                // Token đã được thu hồi trước đó (vd: hai request refresh cùng lúc): ghi lại từng dòng, bỏ qua dòng trùng
+                rows.forEach(this::insertIgnoringDuplicate);
+            }
+
+            jwtIds.forEach(jwtId -> {
+                pending.remove(jwtId);
+                // Bloom filter build lại trong lúc dòng chưa có trong DB có thể đã bỏ sót jti này
+                revokedTokenFilter.markRevoked(jwtId);
+            });
+            writtenRows.increment(jwtIds.size());
+            return true;
+        } catch (DataAccessException e) {
+            failedFlushes.increment();
+            queue.addAll(jwtIds);
+            log.warn("Cannot write {} invalidated tokens, will retry", jwtIds.size(), e);
+            return false;
+        } finally {
+            flushTimer.record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+        }
+    }
+
+    private void insertIgnoringDuplicate(Object[] row){
+        try {
+            jdbcTemplate.update(INSERT_SQL, row);
+        } catch (DuplicateKeyException e) {
+            log.debug("Token {} is already invalidated", row[0]);
+        }
+    }
+}
@@ -0,0 +1,198 @@
+package com.demo.identity_service.service;
+
+import com.demo.identity_service.exception.AppException;
+import com.demo.identity_service.exception.ErrorCode;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Tags;
+import io.micrometer.core.instrument.Timer;
+import io.micrometer.core.instrument.binder.jvm.ExecutorServiceMetrics;
+import jakarta.annotation.PreDestroy;
+import lombok.AccessLevel;
+import lombok.experimental.FieldDefaults;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.security.crypto.password.PasswordEncoder;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
+
+/**
+ * Chạy các thao tác mã hóa/so khớp mật khẩu trên một thread pool riêng
+ * - Số thread giới hạn theo số CPU, hàng đợi có giới hạn
+ * - Hàng đợi đầy hoặc quá timeout: trả về 429 ngay, không chiếm thread của Tomcat
+ * - Các request không liên quan đến mật khẩu (introspect, ...) không bị ảnh hưởng khi có đợt login dồn dập
+ * - Vẫn dùng platform thread khi bật spring.threads.virtual: bcrypt tốn CPU, không được lợi gì từ virtual thread
+ */
+@Slf4j
+@Component
+@FieldDefaults(level = AccessLevel.PRIVATE, makeFinal = true)
+public class PasswordHasher {
+    PasswordEncoder passwordEncoder;
+    ThreadPoolExecutor executor;
+    long timeoutMillis;
+    // Tính cả thời gian chờ trong hàng đợi, là thời gian request đăng nhập thực sự phải chờ
+    Timer matchTimer;
+
+    public PasswordHasher(PasswordEncoder passwordEncoder,
+                          MeterRegistry meterRegistry,
+                          @Value("${security.password.hashing.pool-size:0}") int poolSize,
+                          @Value("${security.password.hashing.queue-capacity:64}") int queueCapacity,
+                          @Value("${security.password.hashing.timeout:2000}") long timeoutMillis) {
+        this.passwordEncoder = passwordEncoder;
+        this.timeoutMillis = timeoutMillis;
+
+        // pool-size = 0: dùng số CPU của máy
+        int threads = poolSize > 0 ? poolSize : Runtime.getRuntime().availableProcessors();
+        AtomicInteger threadIndex = new AtomicInteger();
+
+        this.executor = new ThreadPoolExecutor(
+                threads, threads,
+                0L, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(queueCapacity),
+                runnable -> {
+                    Thread thread = new Thread(runnable, "password-hasher-" + threadIndex.incrementAndGet());
+                    thread.setDaemon(true);
+                    return thread;
+                },
+                new ThreadPoolExecutor.AbortPolicy());
+
+        this.matchTimer = Timer.builder("identity.auth.password.match")
+                .publishPercentileHistogram()
+                .register(meterRegistry);
+        // executor.queued, executor.active, ... với tag name=password-hasher
+        new ExecutorServiceMetrics(executor, "password-hasher", Tags.empty()).bindTo(meterRegistry);
+    }
+
+    /**
+     * Mã hóa mật khẩu bằng PasswordEncoder dùng chung
+     * @param rawPassword mật khẩu gốc
+     * @return mật khẩu đã mã hóa
+     */
+    public String encode(String rawPassword){
+        return execute(() -> passwordEncoder.encode(rawPassword));
+    }
+
+    /**
+     * Mã hóa nhiều mật khẩu song song, dùng cho import hàng loạt
+     * - Mỗi lần chỉ gửi số task bằng số thread của pool để không chiếm hết hàng đợi của các request đăng nhập
+     * - Hàng đợi đầy: mã hóa ngay trên thread gọi thay vì trả về 429
+     * @param rawPasswords các mật khẩu gốc
+     * @return các mật khẩu đã mã hóa, cùng thứ tự với đầu vào
+     */
+    public List<String> encodeAll(List<String> rawPasswords){
+        int sliceSize = executor.getMaximumPoolSize();
+        List<String> encodedPasswords = new ArrayList<>(rawPasswords.size());
+
+        for(int from = 0; from < rawPasswords.size(); from += sliceSize){
+            List<String> slice = rawPasswords.subList(from, Math.min(from + sliceSize, rawPasswords.size()));
+            List<Future<String>> futures = new ArrayList<>(slice.size());
+
+            for(String rawPassword : slice){
+                try {
+                    futures.add(executor.submit(() -> passwordEncoder.encode(rawPassword)));
+                }catch (RejectedExecutionException e){
+                    futures.add(CompletableFuture.completedFuture(passwordEncoder.encode(rawPassword)));
+                }
+            }
+
+            for(Future<String> future : futures){
+                encodedPasswords.add(await(future));
+            }
+        }
+
+        return encodedPasswords;
+    }
+
+    /**
+     * So khớp mật khẩu bằng PasswordEncoder dùng chung
+     * @param rawPassword mật khẩu người dùng nhập
+     * @param encodedPassword mật khẩu đã mã hóa trong DB
+     * @return true nếu khớp
+     */
+    public boolean matches(String rawPassword, String encodedPassword){
+        Timer.Sample sample = Timer.start();
+        try {
+            return execute(() -> passwordEncoder.matches(rawPassword, encodedPassword));
+        } finally {
+            sample.stop(matchTimer);
+        }
+    }
+
+    /**
+     * Mã hóa lại mật khẩu ở chế độ nền nếu tham số lưu trong DB yếu hơn tham số hiện tại
+     * - Không chặn request đăng nhập, pool đầy thì bỏ qua và thử lại ở lần đăng nhập sau
+     * @param rawPassword mật khẩu gốc vừa so khớp thành công
+     * @param encodedPassword mật khẩu đã mã hóa trong DB
+     * @param onRehashed nhận mật khẩu đã mã hóa lại để lưu
+     */
+    public void rehashIfNeeded(String rawPassword, String encodedPassword, Consumer<String> onRehashed){
+        if(!passwordEncoder.upgradeEncoding(encodedPassword)) return;
+
+        try {
+            executor.execute(() -> {
+                try {
+                    onRehashed.accept(passwordEncoder.encode(rawPassword));
+                }catch (RuntimeException e){
+                    log.warn("Cannot rehash password", e);
+                }
+            });
+        }catch (RejectedExecutionException e){
+            log.debug("Password hashing queue is full, skip rehash");
+        }
+    }
+
+    private <T> T execute(Callable<T> task){
+        Future<T> future;
+        try {
+            future = executor.submit(task);
+        }catch (RejectedExecutionException e){
+            log.warn("Password hashing queue is full, rejecting request");
+            throw new AppException(ErrorCode.TOO_MANY_REQUESTS);
+        }
+
+        try {
+            return future.get(timeoutMillis, TimeUnit.MILLISECONDS);
+        }catch (TimeoutException e){
+            future.cancel(true);
+            log.warn("Password hashing timed out after {} ms", timeoutMillis);
+            throw new AppException(ErrorCode.TOO_MANY_REQUESTS);
+        }catch (InterruptedException e){
+            future.cancel(true);
+            Thread.currentThread().interrupt();
+            throw new AppException(ErrorCode.TOO_MANY_REQUESTS);
+        }catch (ExecutionException e){
+            if(e.getCause() instanceof RuntimeException runtimeException) throw runtimeException;
+            throw new IllegalStateException(e.getCause());
+        }
+    }
+
+    private <T> T await(Future<T> future){
+        try {
+            return future.get();
+        }catch (InterruptedException e){
+            future.cancel(true);
+            Thread.currentThread().interrupt();
+            throw new AppException(ErrorCode.TOO_MANY_REQUESTS);
+        }catch (ExecutionException e){
+            if(e.getCause() instanceof RuntimeException runtimeException) throw runtimeException;
+            throw new IllegalStateException(e.getCause());
+        }
+    }
+
+    @PreDestroy
+    void shutdown(){
+        executor.shutdownNow();
+    }
+}
@@ -0,0 +1,206 @@
+package com.demo.identity_service.service;
+
+import com.demo.identity_service.entity.Permission;
+import com.demo.identity_service.repository.PermissionRepository;
+import lombok.AccessLevel;
+import lombok.RequiredArgsConstructor;
+import lombok.experimental.FieldDefaults;
+import lombok.experimental.NonFinal;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.context.event.ApplicationStartedEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Base64;
+import java.util.BitSet;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Từ điển permission dùng cho claim perm dạng bitset (jwt.scope.compact=true)
+ * - Permission được sắp xếp theo tên, bit thứ i ứng với permission thứ i
+ * - Claim perm = "<version>.<bitset Base64url>", version = hash nội dung của danh sách permission:
+ *   các instance có cùng danh sách permission tự tính ra cùng version, không cần đồng bộ
+ * - Các version cũ vẫn được giữ trong bộ nhớ để giải mã token tạo trước khi permission thay đổi
+ * - Version lạ trong token chỉ làm load lại từ DB tối đa 1 lần/giây, các token còn lại bị từ chối ngay
+ */
+@Slf4j
+@Component
+@RequiredArgsConstructor
+@FieldDefaults(level = AccessLevel.PRIVATE, makeFinal = true)
+public class PermissionDictionary {
+    public static final String CLAIM = "perm";
+
+    // Số version cũ tối đa được giữ lại
+    private static final int MAX_VERSIONS = 8;
+
+    // Load lại khi gặp version lạ tối đa 1 lần/giây
+    private static final long UNKNOWN_VERSION_RELOAD_INTERVAL_MILLIS = 1000;
+
+    private static final Base64.Encoder ENCODER = Base64.getUrlEncoder().withoutPadding();
+    private static final Base64.Decoder DECODER = Base64.getUrlDecoder();
+
+    PermissionRepository permissionRepository;
+
+    // Không dùng synchronized: virtual thread bị ghim vào carrier thread khi chờ monitor
+    ReentrantLock reloadLock = new ReentrantLock();
+
+    AtomicLong lastUnknownVersionReload = new AtomicLong();
+
+    // version -> từ điển, copy-on-write vì chỉ thay đổi khi permission thay đổi
+    @NonFinal
+    volatile Map<String, Dictionary> dictionaries = Map.of();
+
+    @NonFinal
+    volatile Dictionary current;
+
+    /**
+     * Mã hóa các permission thành claim perm theo từ điển hiện tại
+     * @param permissions tên các permission
+     * @return claim perm, null nếu có permission chưa có trong từ điển (dùng scope đầy đủ)
+     */
+    public String encode(Collection<String> permissions){
+        String encoded = encode(current, permissions);
+        if(Objects.nonNull(encoded)) return encoded;
+
+        // Permission vừa được tạo trên instance khác
+        reload();
+        return encode(current, permissions);
+    }
+
+    /**
+     * Giải mã claim perm
+     * @param claim "<version>.<bitset>"
+     * @return tên các permission, null nếu claim sai định dạng hoặc version không còn được giữ
+     */
+    public Set<String> decode(String claim){
+        int separator = claim.indexOf('.');
+        if(separator < 0) return null;
+
+        String version = claim.substring(0, separator);
+        Dictionary dictionary = dictionaries.get(version);
+        if(Objects.isNull(dictionary)){
+            // Token được tạo bởi instance đã load permission mới hơn
+            if(!reloadForUnknownVersion()) return null;
+            dictionary = dictionaries.get(version);
+            if(Objects.isNull(dictionary)) return null;
+        }
+
+        BitSet bits;
+        try {
+            bits = BitSet.valueOf(DECODER.decode(claim.substring(separator + 1)));
+        } catch (IllegalArgumentException e) {
+            return null;
+        }
+
+        if(bits.length() > dictionary.names().size()) return null;
+
+        List<String> names = dictionary.names();
+        Set<String> permissions = new LinkedHashSet<>();
+        bits.stream().forEach(index -> permissions.add(names.get(index)));
+        return permissions;
+    }
+
+    /**
+     * Version có còn được giữ hay không, refresh chỉ dùng lại claim perm khi còn giải mã được
+     */
+    public boolean isKnown(String claim){
+        int separator = claim.indexOf('.');
+        return separator >= 0 && dictionaries.containsKey(claim.substring(0, separator));
+    }
+
+    @EventListener(ApplicationStartedEvent.class)
+    public void onStartup(){
+        reload();
+    }
+
+    /**
+     * Load lại danh sách permission, gọi sau khi permission được tạo/xóa
+     * - Danh sách không đổi: giữ nguyên version hiện tại
+     */
+    @Scheduled(fixedDelayString = "${jwt.scope.dictionary-reload-interval:30000}",
+            initialDelayString = "${jwt.scope.dictionary-reload-interval:30000}")
+    public void reload(){
+        // findAll() nằm trong query cache
+        List<String> names = permissionRepository.findAll().stream()
+                .map(Permission::getName)
+                .sorted()
+                .toList();
+
+        reloadLock.lock();
+        try {
+            String version = versionOf(names);
+            if(Objects.nonNull(current) && current.version().equals(version)) return;
+
+            Map<String, Integer> index = new HashMap<>();
+            for(int i = 0; i < names.size(); i++) index.put(names.get(i), i);
+            Dictionary dictionary = new Dictionary(version, names, Map.copyOf(index));
+
+            Map<String, Dictionary> updated = new LinkedHashMap<>(dictionaries);
+            updated.remove(version);
+            updated.put(version, dictionary);
+            while(updated.size() > MAX_VERSIONS){
+                updated.remove(updated.keySet().iterator().next());
+            }
+
+            dictionaries = updated;
+            current = dictionary;
+
+            log.info("Permission dictionary {} loaded with {} permissions", version, names.size());
+        } finally {
+            reloadLock.unlock();
+        }
+    }
+
+    // Version lạ: load lại ngay, nhưng không quá 1 lần/giây để token có version cũ hoặc giả mạo
+    // không làm các request xếp hàng chờ truy vấn DB
+    private boolean reloadForUnknownVersion(){
+        long now = System.currentTimeMillis();
+        long last = lastUnknownVersionReload.get();
+        if(now - last < UNKNOWN_VERSION_RELOAD_INTERVAL_MILLIS || !lastUnknownVersionReload.compareAndSet(last, now)){
+            return false;
+        }
+
+        reload();
+        return true;
+    }
+
+    private static String encode(Dictionary dictionary, Collection<String> permissions){
+        if(Objects.isNull(dictionary)) return null;
+
+        BitSet bits = new BitSet(dictionary.names().size());
+        for(String permission : permissions){
+            Integer index = dictionary.index().get(permission);
+            if(Objects.isNull(index)) return null;
+            bits.set(index);
+        }
+
+        return dictionary.version() + "." + ENCODER.encodeToString(bits.toByteArray());
+    }
+
+    // version = 8 ký tự đầu của SHA-256(tên các permission đã sắp xếp)
+    private static String versionOf(List<String> names){
+        try {
+            byte[] hash = MessageDigest.getInstance("SHA-256")
+                    .digest(String.join("\n", names).getBytes(StandardCharsets.UTF_8));
+            return ENCODER.encodeToString(hash).substring(0, 8);
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private record Dictionary(String version, List<String> names, Map<String, Integer> index) {
+    }
+}
@@ -3,12 +3,15 @@ package com.demo.identity_service.service;
 import com.demo.identity_service.dto.request.PermissionRequest;
 import com.demo.identity_service.dto.response.PermissionResponse;
 import com.demo.identity_service.entity.Permission;
+import com.demo.identity_service.entity.Role;
 import com.demo.identity_service.mapper.PermissionMapper;
 import com.demo.identity_service.repository.PermissionRepository;
+import jakarta.persistence.EntityManagerFactory;
 import lombok.AccessLevel;
 import lombok.RequiredArgsConstructor;
 import lombok.experimental.FieldDefaults;
 import lombok.extern.slf4j.Slf4j;
+import org.hibernate.Cache;
 import org.springframework.stereotype.Service;
 
 import java.util.List;
@@ -21,10 +24,17 @@ public class PermissionService {
 
     PermissionRepository permissionRepository;
     PermissionMapper permissionMapper;
+    RoleScopeCache roleScopeCache;
+    PermissionDictionary permissionDictionary;
+    AuthoritiesVersionStore authoritiesVersionStore;
+    EntityManagerFactory entityManagerFactory;
 
     public PermissionResponse create(PermissionRequest request) {
         Permission permission = permissionMapper.toPermission(request);
         permission = permissionRepository.save(permission);
+        // Permission mới chưa thuộc role nào: quyền của user không đổi, không cần tăng version
+        roleScopeCache.clear();
+        permissionDictionary.reload();
 
         return permissionMapper.toPermissionResponse(permission);
     }
@@ -38,5 +48,10 @@ public class PermissionService {
 
     public void delete(String permission){
         permissionRepository.deleteById(permission);
+        roleScopeCache.clear();
+        authoritiesVersionStore.rolesChanged();
+        permissionDictionary.reload();
+        // Role.permissions trong second-level cache có thể vẫn giữ permission vừa bị xóa
+        entityManagerFactory.getCache().unwrap(Cache.class).evictCollectionData(Role.class.getName() + ".permissions");
     }
 }
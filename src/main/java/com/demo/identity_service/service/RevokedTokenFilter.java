@@ -0,0 +1,341 @@
+package com.demo.identity_service.service;
+
+import com.demo.identity_service.repository.InvalidatedTokenRepository;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import lombok.AccessLevel;
+import lombok.experimental.FieldDefaults;
+import lombok.experimental.NonFinal;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationStartedEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.time.Instant;
+import java.time.temporal.ChronoUnit;
+import java.util.Date;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Bộ lọc Bloom cho danh sách token đã bị thu hồi
+ * - mightContain() = false: token chắc chắn chưa bị thu hồi, không cần truy vấn DB
+ * - mightContain() = true: có thể đã bị thu hồi, phải kiểm tra lại trong DB
+ * - Được build từ bảng invalidated_token khi khởi động và build lại định kỳ
+ *   để loại bỏ các token đã hết hạn
+ * - Mỗi instance có filter riêng: sync() đọc các dòng có revoked_at mới hơn lần đọc trước,
+ *   token bị thu hồi trên instance khác bị từ chối sau tối đa sync-interval
+ * - Filter chỉ được tin khi lần sync thành công gần nhất chưa quá max-staleness,
+ *   ngược lại (DB lỗi, sync bị chậm) mọi lookup đều xuống DB như khi chưa có filter
+ */
+@Slf4j
+@Component
+@FieldDefaults(level = AccessLevel.PRIVATE, makeFinal = true)
+public class RevokedTokenFilter {
+    InvalidatedTokenRepository invalidatedTokenRepository;
+
+    long expectedInsertions;
+    double falsePositiveRate;
+    long refreshableDuration;
+    long syncOverlapMillis;
+    long maxStalenessMillis;
+
+    // sync() và rebuild() không chạy cùng lúc, cùng cập nhật syncedAt
+    ReentrantLock syncLock = new ReentrantLock();
+
+    Counter negativeLookups;
+    Counter positiveLookups;
+    Counter falsePositives;
+    Timer rebuildTimer;
+    Counter staleLookups;
+
+    // Filter đang được sử dụng, null khi chưa build xong (mọi lookup đều xuống DB)
+    @NonFinal
+    volatile BloomFilter current;
+
+    // Filter đang được build lại, các jti mới bị thu hồi được ghi vào cả hai filter
+    @NonFinal
+    volatile BloomFilter building;
+
+    // Thời điểm bắt đầu của lần sync/rebuild thành công gần nhất (millis), lần sync sau đọc từ đây
+    @NonFinal
+    volatile long syncedAt;
+
+    public RevokedTokenFilter(InvalidatedTokenRepository invalidatedTokenRepository,
+                              MeterRegistry meterRegistry,
+                              @Value("${jwt.revocation.bloom.expected-insertions:100000}") long expectedInsertions,
+                              @Value("${jwt.revocation.bloom.false-positive-rate:0.01}") double falsePositiveRate,
+                              @Value("${jwt.refreshable-duration}") long refreshableDuration,
+                              @Value("${jwt.revocation.bloom.sync-overlap:10000}") long syncOverlapMillis,
+                              @Value("${jwt.revocation.bloom.max-staleness:10000}") long maxStalenessMillis) {
+        this.invalidatedTokenRepository = invalidatedTokenRepository;
+        this.expectedInsertions = expectedInsertions;
+        this.falsePositiveRate = falsePositiveRate;
+        this.refreshableDuration = refreshableDuration;
+        this.syncOverlapMillis = syncOverlapMillis;
+        this.maxStalenessMillis = maxStalenessMillis;
+
+        this.negativeLookups = Counter.builder("identity.revocation.filter.lookups")
+                .tag("result", "negative")
+                .register(meterRegistry);
+        this.positiveLookups = Counter.builder("identity.revocation.filter.lookups")
+                .tag("result", "positive")
+                .register(meterRegistry);
+        this.falsePositives = Counter.builder("identity.revocation.filter.false.positives")
+                .register(meterRegistry);
+        this.rebuildTimer = Timer.builder("identity.revocation.filter.rebuild")
+                .register(meterRegistry);
+        this.staleLookups = Counter.builder("identity.revocation.filter.stale.lookups")
+                .register(meterRegistry);
+
+        Gauge.builder("identity.revocation.filter.expected.fpp", this, RevokedTokenFilter::expectedFalsePositiveRate)
+                .register(meterRegistry);
+        Gauge.builder("identity.revocation.filter.observed.fpp", this, RevokedTokenFilter::observedFalsePositiveRate)
+                .register(meterRegistry);
+        Gauge.builder("identity.revocation.filter.entries", this, RevokedTokenFilter::entries)
+                .register(meterRegistry);
+    }
+
+    /**
+     * Kiểm tra token đã bị thu hồi hay chưa
+     * @param jwtId jti của token
+     * @return true nếu token có trong bảng invalidated_token
+     */
+    public boolean isRevoked(String jwtId){
+        BloomFilter filter = freshFilter();
+
+        if(Objects.nonNull(filter) && !filter.mightContain(jwtId)){
+            negativeLookups.increment();
+            return false;
+        }
+
+        positiveLookups.increment();
+        boolean revoked = invalidatedTokenRepository.existsById(jwtId);
+
+        if(!revoked && Objects.nonNull(filter)){
+            falsePositives.increment();
+        }
+
+        return revoked;
+    }
+
+    /**
+     * Kiểm tra nhiều token cùng lúc, chỉ các jti bị filter báo "có thể" mới được truy vấn DB
+     * @param jwtIds các jti cần kiểm tra
+     * @return các jti đã bị thu hồi
+     */
+    public Set<String> findRevoked(Set<String> jwtIds){
+        BloomFilter filter = freshFilter();
+
+        List<String> candidates = jwtIds.stream()
+                .filter(jwtId -> Objects.isNull(filter) || filter.mightContain(jwtId))
+                .toList();
+
+        negativeLookups.increment(jwtIds.size() - candidates.size());
+        if(candidates.isEmpty()) return Set.of();
+
+        positiveLookups.increment(candidates.size());
+        Set<String> revoked = new HashSet<>(invalidatedTokenRepository.findExistingIds(candidates));
+
+        if(Objects.nonNull(filter)){
+            falsePositives.increment(candidates.size() - revoked.size());
+        }
+
+        return revoked;
+    }
+
+    /**
+     * Ghi nhận token vừa bị thu hồi trên instance này hoặc vừa được sync() đọc từ DB
+     * @param jwtId jti của token
+     */
+    public void markRevoked(String jwtId){
+        BloomFilter filter = current;
+        if(Objects.nonNull(filter)) filter.putIfAbsent(jwtId);
+
+        BloomFilter next = building;
+        if(Objects.nonNull(next)) next.putIfAbsent(jwtId);
+    }
+
+    /**
+     * Đọc các token được thu hồi kể từ lần sync trước, kể cả trên các instance khác
+     * - Đọc lùi thêm sync-overlap: dòng được commit muộn hoặc đồng hồ giữa các instance lệch nhau
+     *   vẫn không bị bỏ sót, dòng đã có trong filter không bị đếm lại
+     */
+    @Scheduled(fixedDelayString = "${jwt.revocation.bloom.sync-interval:2000}",
+            initialDelayString = "${jwt.revocation.bloom.sync-interval:2000}")
+    public void sync(){
+        syncLock.lock();
+        try {
+            // Chưa build xong: mọi lookup đều xuống DB, rebuild() sẽ đặt mốc sync đầu tiên
+            if(Objects.isNull(current)) return;
+
+            long start = System.currentTimeMillis();
+            List<String> ids = invalidatedTokenRepository.findIdsRevokedSince(new Date(syncedAt - syncOverlapMillis));
+            ids.forEach(this::markRevoked);
+            syncedAt = start;
+
+            log.debug("Revoked token filter synced {} rows", ids.size());
+        } finally {
+            syncLock.unlock();
+        }
+    }
+
+    @EventListener(ApplicationStartedEvent.class)
+    public void onStartup(){
+        rebuild();
+    }
+
+    /**
+     * Build lại filter từ DB, bỏ qua các token đã hết thời gian refresh
+     */
+    @Scheduled(fixedDelayString = "${jwt.revocation.bloom.rebuild-interval:600000}",
+            initialDelayString = "${jwt.revocation.bloom.rebuild-interval:600000}")
+    public void rebuild(){
+        syncLock.lock();
+        try {
+            rebuildTimer.record(this::build);
+        } finally {
+            syncLock.unlock();
+        }
+    }
+
+    private void build(){
+        // Token bị thu hồi vẫn có thể được gửi lên /auth/refresh trong khoảng refreshable-duration
+        Date activeAfter = Date.from(Instant.now().minus(refreshableDuration, ChronoUnit.SECONDS));
+
+        // Dòng được ghi trong lúc build sẽ được lần sync tiếp theo đọc lại
+        long start = System.currentTimeMillis();
+
+        // Dữ liệu vượt quá dung lượng dự kiến: tăng kích thước để giữ đúng tỉ lệ false positive
+        long activeCount = invalidatedTokenRepository.countByExpirationTimeAfter(activeAfter);
+        BloomFilter next = new BloomFilter(Math.max(expectedInsertions, activeCount * 2), falsePositiveRate);
+        building = next;
+
+        try {
+            List<String> ids = invalidatedTokenRepository.findIdsByExpirationTimeAfter(activeAfter);
+            ids.forEach(next::putIfAbsent);
+            current = next;
+            syncedAt = start;
+
+            log.info("Revoked token filter rebuilt with {} entries", ids.size());
+        } finally {
+            building = null;
+        }
+    }
+
+    // Filter chỉ dùng được khi đã sync gần đây, ngược lại câu trả lời "chưa thu hồi" có thể đã cũ
+    private BloomFilter freshFilter(){
+        BloomFilter filter = current;
+        if(Objects.isNull(filter)) return null;
+
+        if(System.currentTimeMillis() - syncedAt > maxStalenessMillis){
+            staleLookups.increment();
+            return null;
+        }
+
+        return filter;
+    }
+
+    double expectedFalsePositiveRate(){
+        BloomFilter filter = current;
+        return Objects.isNull(filter) ? 0 : filter.expectedFalsePositiveRate();
+    }
+
+    // Tỉ lệ token chưa bị thu hồi nhưng filter vẫn báo "có thể đã thu hồi"
+    double observedFalsePositiveRate(){
+        double notRevoked = negativeLookups.count() + falsePositives.count();
+        return notRevoked == 0 ? 0 : falsePositives.count() / notRevoked;
+    }
+
+    double entries(){
+        BloomFilter filter = current;
+        return Objects.isNull(filter) ? 0 : filter.insertions();
+    }
+
+    /**
+     * Bloom filter an toàn đa luồng, dùng double hashing trên 2 giá trị hash 64-bit
+     */
+    private static final class BloomFilter {
+        private final AtomicLongArray bits;
+        private final long bitSize;
+        private final int hashFunctions;
+        private final LongAdder insertions = new LongAdder();
+
+        BloomFilter(long expectedInsertions, double falsePositiveRate){
+            long n = Math.max(1, expectedInsertions);
+            long m = (long) Math.ceil(-n * Math.log(falsePositiveRate) / (Math.log(2) * Math.log(2)));
+            int words = (int) Math.max(1, (m + 63) / 64);
+
+            this.bits = new AtomicLongArray(words);
+            this.bitSize = words * 64L;
+            this.hashFunctions = Math.max(1, (int) Math.round((double) bitSize / n * Math.log(2)));
+        }
+
+        void put(String value){
+            long hash1 = hash(value, 0);
+            long hash2 = hash(value, 0x9E3779B97F4A7C15L);
+
+            for(int i = 0; i < hashFunctions; i++){
+                long index = Math.floorMod(hash1 + i * hash2, bitSize);
+                int word = (int) (index >>> 6);
+                long mask = 1L << index;
+
+                long old;
+                do {
+                    old = bits.get(word);
+                    if((old & mask) != 0) break;
+                } while(!bits.compareAndSet(word, old, old | mask));
+            }
+            insertions.increment();
+        }
+
+        // Không đếm lại jti đã có: sync() đọc lại các dòng trong khoảng sync-overlap
+        void putIfAbsent(String value){
+            if(!mightContain(value)) put(value);
+        }
+
+        boolean mightContain(String value){
+            long hash1 = hash(value, 0);
+            long hash2 = hash(value, 0x9E3779B97F4A7C15L);
+
+            for(int i = 0; i < hashFunctions; i++){
+                long index = Math.floorMod(hash1 + i * hash2, bitSize);
+                if((bits.get((int) (index >>> 6)) & (1L << index)) == 0) return false;
+            }
+            return true;
+        }
+
+        long insertions(){
+            return insertions.sum();
+        }
+
+        double expectedFalsePositiveRate(){
+            return Math.pow(1 - Math.exp(-hashFunctions * (double) insertions() / bitSize), hashFunctions);
+        }
+
+        // FNV-1a 64-bit, sau đó trộn bit bằng hàm fmix64 của MurmurHash3
+        private static long hash(String value, long seed){
+            long hash = 0xcbf29ce484222325L ^ seed;
+            for(int i = 0; i < value.length(); i++){
+                hash ^= value.charAt(i);
+                hash *= 0x100000001b3L;
+            }
+
+            hash ^= hash >>> 33;
+            hash *= 0xff51afd7ed558ccdL;
+            hash ^= hash >>> 33;
+            hash *= 0xc4ceb9fe1a85ec53L;
+            hash ^= hash >>> 33;
+            return hash;
+        }
+    }
+}
@@ -0,0 +1,138 @@
+package com.demo.identity_service.service;
+
+import com.demo.identity_service.dto.projection.RolePermissionRow;
+import com.demo.identity_service.dto.projection.UserAuthorities;
+import com.demo.identity_service.repository.RoleRepository;
+import lombok.AccessLevel;
+import lombok.RequiredArgsConstructor;
+import lombok.experimental.FieldDefaults;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.StringJoiner;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Cache permission và chuỗi scope đã build sẵn cho từng role: "ROLE_x perm1 perm2 ..."
+ * - Đăng nhập chỉ load tên role của user, permission của role lấy từ cache
+ * - Các role chưa có trong cache được load chung trong một truy vấn role -> permission
+ * - Scope của user = nối các đoạn đã cache của các role
+ * - Bị xóa khi RoleService/PermissionService thay đổi role hoặc permission
+ */
+@Component
+@RequiredArgsConstructor
+@FieldDefaults(level = AccessLevel.PRIVATE, makeFinal = true)
+public class RoleScopeCache {
+    RoleRepository roleRepository;
+    AuthMetrics authMetrics;
+
+    Map<String, RoleScope> roles = new ConcurrentHashMap<>();
+    // Tăng mỗi lần invalidate, dùng để không cache đoạn scope build từ dữ liệu cũ
+    AtomicLong generation = new AtomicLong();
+
+    /**
+     * Lấy generation hiện tại, gọi trước khi truy vấn quyền của user
+     */
+    public long generation(){
+        return generation.get();
+    }
+
+    /**
+     * Build scope của user từ các đoạn đã cache
+     * @param user user đã load từ DB
+     * @param loadedGeneration generation lấy trước khi load user
+     * @return chuỗi scope, phân tách bằng dấu cách
+     */
+    public String scopeOf(UserAuthorities user, long loadedGeneration){
+        StringJoiner stringJoiner = new StringJoiner(" ");
+        rolesOf(user.roleNames(), loadedGeneration).forEach(role -> stringJoiner.add(role.fragment()));
+        return stringJoiner.toString();
+    }
+
+    /**
+     * Toàn bộ permission của user, dùng cho claim perm dạng bitset
+     * @param user user đã load từ DB
+     * @param loadedGeneration generation lấy trước khi load user
+     */
+    public Set<String> permissionsOf(UserAuthorities user, long loadedGeneration){
+        Set<String> permissions = new HashSet<>();
+        rolesOf(user.roleNames(), loadedGeneration).forEach(role -> permissions.addAll(role.permissions()));
+        return permissions;
+    }
+
+    /**
+     * Xóa đoạn scope của một role
+     */
+    public void evict(String roleName){
+        generation.incrementAndGet();
+        if(Objects.nonNull(roleName)) roles.remove(roleName);
+    }
+
+    /**
+     * Xóa toàn bộ cache, dùng khi permission thay đổi
+     */
+    public void clear(){
+        generation.incrementAndGet();
+        roles.clear();
+    }
+
+    private List<RoleScope> rolesOf(List<String> roleNames, long loadedGeneration){
+        Map<String, RoleScope> found = new HashMap<>();
+        List<String> missing = new ArrayList<>();
+
+        for(String roleName : roleNames){
+            RoleScope role = roles.get(roleName);
+            authMetrics.roleScopeCacheLookup(Objects.nonNull(role));
+            if(Objects.nonNull(role)) found.put(roleName, role);
+            else missing.add(roleName);
+        }
+
+        if(!missing.isEmpty()) found.putAll(load(missing, loadedGeneration));
+
+        return roleNames.stream().map(found::get).toList();
+    }
+
+    // Một truy vấn cho mọi role còn thiếu
+    private Map<String, RoleScope> load(List<String> roleNames, long loadedGeneration){
+        Map<String, Set<String>> permissionsByRole = new HashMap<>();
+        // Role vừa bị xóa sau khi load user: không có dòng nào, coi như role không có permission
+        roleNames.forEach(roleName -> permissionsByRole.put(roleName, new LinkedHashSet<>()));
+
+        for(RolePermissionRow row : roleRepository.findPermissionRows(roleNames)){
+            if(Objects.nonNull(row.getPermissionName())){
+                permissionsByRole.get(row.getRoleName()).add(row.getPermissionName());
+            }
+        }
+
+        Map<String, RoleScope> loaded = new HashMap<>();
+        permissionsByRole.forEach((roleName, permissions) -> {
+            StringJoiner stringJoiner = new StringJoiner(" ");
+            stringJoiner.add("ROLE_" + roleName);
+            permissions.forEach(stringJoiner::add);
+            RoleScope role = new RoleScope(stringJoiner.toString(), Set.copyOf(permissions));
+            loaded.put(roleName, role);
+
+            // Chỉ cache khi không có thay đổi role/permission nào kể từ lúc load dữ liệu
+            if(generation.get() == loadedGeneration){
+                roles.putIfAbsent(roleName, role);
+
+                if(generation.get() != loadedGeneration){
+                    roles.remove(roleName, role);
+                }
+            }
+        });
+
+        return loaded;
+    }
+
+    private record RoleScope(String fragment, Set<String> permissions) {
+    }
+}
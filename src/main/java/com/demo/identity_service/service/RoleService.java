@@ -23,6 +23,8 @@ public class RoleService {
     RoleRepository roleRepository;
     PermissionRepository permissionRepository;
     RoleMapper roleMapper;
+    RoleScopeCache roleScopeCache;
+    AuthoritiesVersionStore authoritiesVersionStore;
 
     public RoleResponse create(RoleRequest request){
         var role = roleMapper.toRole(request);
@@ -30,6 +32,8 @@ public class RoleService {
 
         role.setPermissions(new HashSet<>(permissions));
         role = roleRepository.save(role);
+        roleScopeCache.evict(role.getName());
+        authoritiesVersionStore.rolesChanged();
 
         return roleMapper.toRoleResponse(role);
     }
@@ -41,5 +45,7 @@ public class RoleService {
 
     public void delete(String role){
         roleRepository.deleteById(role);
+        roleScopeCache.evict(role);
+        authoritiesVersionStore.rolesChanged();
     }
 }
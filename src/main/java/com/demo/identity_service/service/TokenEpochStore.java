@@ -0,0 +1,121 @@
+package com.demo.identity_service.service;
+
+import com.demo.identity_service.entity.UserTokenEpoch;
+import com.demo.identity_service.repository.UserTokenEpochRepository;
+import lombok.AccessLevel;
+import lombok.RequiredArgsConstructor;
+import lombok.experimental.FieldDefaults;
+import lombok.experimental.NonFinal;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.context.event.ApplicationStartedEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.util.Map;
+import java.util.Objects;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Epoch token theo từng user, dùng để thu hồi mọi token của một user bằng một lần ghi
+ * - Token mang claim uid (id user) và epc (epoch lúc tạo token)
+ * - Token bị từ chối khi epc nhỏ hơn epoch hiện tại của user
+ * - Kiểm tra chỉ là một lookup trên map trong bộ nhớ, map được load từ bảng user_token_epoch
+ *   khi khởi động và load lại định kỳ để nhận thay đổi từ các instance khác
+ */
+@Slf4j
+@Component
+@RequiredArgsConstructor
+@FieldDefaults(level = AccessLevel.PRIVATE, makeFinal = true)
+public class TokenEpochStore {
+    public static final String USER_ID_CLAIM = "uid";
+    public static final String EPOCH_CLAIM = "epc";
+
+    UserTokenEpochRepository userTokenEpochRepository;
+
+    // uid -> epoch, user không có trong map có epoch = 0
+    Map<String, Long> epochs = new ConcurrentHashMap<>();
+
+    // Chưa load xong: lookup xuống DB để không chấp nhận token đã bị thu hồi lúc khởi động
+    @NonFinal
+    volatile boolean loaded;
+
+    /**
+     * Epoch hiện tại của user, gắn vào claim epc khi tạo token
+     */
+    public long currentEpoch(String userId){
+        if(!loaded) return loadEpoch(userId);
+        return epochs.getOrDefault(userId, 0L);
+    }
+
+    /**
+     * Kiểm tra token đã bị thu hồi bởi "đăng xuất mọi nơi" hay chưa
+     * @param userId claim uid, null với token tạo trước khi có epoch (chấp nhận đến khi hết hạn)
+     * @param epoch claim epc, null được coi là 0
+     * @return true nếu epoch của token nhỏ hơn epoch hiện tại của user
+     */
+    public boolean isRevoked(String userId, Number epoch){
+        if(Objects.isNull(userId)) return false;
+
+        long tokenEpoch = Objects.isNull(epoch) ? 0 : epoch.longValue();
+        return tokenEpoch < currentEpoch(userId);
+    }
+
+    /**
+     * Thu hồi mọi token đã cấp cho user
+     * @param userId id của user
+     * @return epoch mới, các token tạo sau đó mang epoch này
+     */
+    public long bump(UUID userId){
+        if(userTokenEpochRepository.incrementEpoch(userId) == 0){
+            try {
+                // Lần đầu thu hồi của user: chưa có dòng nào
+                userTokenEpochRepository.saveAndFlush(UserTokenEpoch.builder()
+                        .userId(userId)
+                        .epoch(1)
+                        .build());
+            } catch (DataIntegrityViolationException e) {
+                // Instance khác vừa insert cùng user
+                userTokenEpochRepository.incrementEpoch(userId);
+            }
+        }
+
+        long epoch = loadEpoch(userId.toString());
+        epochs.merge(userId.toString(), epoch, Math::max);
+
+        log.info("Token epoch of user {} bumped to {}", userId, epoch);
+        return epoch;
+    }
+
+    @EventListener(ApplicationStartedEvent.class)
+    public void onStartup(){
+        reload();
+    }
+
+    /**
+     * Load lại toàn bộ epoch từ DB
+     * - Epoch chỉ tăng: gộp vào map hiện tại và giữ giá trị lớn hơn, lần bump cục bộ chạy xen vào không bị mất
+     */
+    @Scheduled(fixedDelayString = "${jwt.epoch.reload-interval:30000}",
+            initialDelayString = "${jwt.epoch.reload-interval:30000}")
+    public void reload(){
+        userTokenEpochRepository.findAll()
+                .forEach(epoch -> epochs.merge(epoch.getUserId().toString(), epoch.getEpoch(), Math::max));
+        loaded = true;
+
+        log.debug("Token epochs reloaded with {} entries", epochs.size());
+    }
+
+    private long loadEpoch(String userId){
+        try {
+            return userTokenEpochRepository.findById(UUID.fromString(userId))
+                    .map(UserTokenEpoch::getEpoch)
+                    .orElse(0L);
+        } catch (IllegalArgumentException e) {
+            // uid không phải UUID: không thể là user nào
+            return 0;
+        }
+    }
+}
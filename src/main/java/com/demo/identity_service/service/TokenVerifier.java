@@ -0,0 +1,180 @@
+package com.demo.identity_service.service;
+
+import com.demo.identity_service.configuration.JwtKeyRing;
+import com.demo.identity_service.exception.InvalidTokenException;
+import com.nimbusds.jose.JOSEException;
+import com.nimbusds.jose.JWSVerifier;
+import com.nimbusds.jwt.JWTClaimsSet;
+import com.nimbusds.jwt.SignedJWT;
+import io.micrometer.core.instrument.Timer;
+import lombok.AccessLevel;
+import lombok.RequiredArgsConstructor;
+import lombok.experimental.FieldDefaults;
+import lombok.experimental.NonFinal;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.text.ParseException;
+import java.time.temporal.ChronoUnit;
+import java.util.Date;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Objects;
+import java.util.Set;
+import java.util.stream.Collectors;
+
+/**
+ * Pipeline xác thực JWT dùng chung cho CustomJWTDecoder, introspect, refresh và logout
+ * - Parse token đúng một lần
+ * - Verify chữ ký trước khi deserialize claims
+ * - Kiểm tra hạn sử dụng và danh sách token đã thu hồi
+ */
+@Component
+@RequiredArgsConstructor
+@FieldDefaults(level = AccessLevel.PRIVATE, makeFinal = true)
+public class TokenVerifier {
+    JwtKeyRing jwtKeyRing;
+    RevokedTokenFilter revokedTokenFilter;
+    InvalidatedTokenWriter invalidatedTokenWriter;
+    TokenEpochStore tokenEpochStore;
+    AuthMetrics authMetrics;
+
+    @NonFinal
+    @Value("${jwt.refreshable-duration}")
+    protected long REFRESHABLE_DURATION;
+
+    /**
+     * Xác thực JWT token
+     * @param token cần xác thực
+     * @param isRefresh true khi dùng cho refresh/logout: hạn tính theo iat + refreshable-duration
+     * @return token đã xác thực
+     * @throws InvalidTokenException (UNAUTHENTICATED) nếu chữ ký sai, token hết hạn hoặc đã bị thu hồi
+     * @throws ParseException nếu không parse được token
+     */
+    public VerifiedToken verify(String token, boolean isRefresh) throws JOSEException, ParseException {
+        VerifiedToken verifiedToken = verifySignature(token, isRefresh);
+
+        // "Đăng xuất mọi nơi": chỉ là lookup trên map, kiểm tra trước khi tra danh sách thu hồi
+        if(isEpochRevoked(verifiedToken.claims())){
+            throw new InvalidTokenException(InvalidTokenException.Reason.REVOKED);
+        }
+
+        // Kiểm tra token có trong danh sách đã vô hiệu hóa không
+        if(isRevoked(verifiedToken.claims().getJWTID())){
+            throw new InvalidTokenException(InvalidTokenException.Reason.REVOKED);
+        }
+
+        return verifiedToken;
+    }
+
+    /**
+     * Kiểm tra jti trong danh sách token đã thu hồi, kể cả token chưa được ghi xuống DB
+     * - Dùng cả cho token lấy từ VerifiedTokenCache: token có thể bị thu hồi trên instance khác
+     * @param jwtId jti của token, null được coi là đã thu hồi
+     */
+    public boolean isRevoked(String jwtId){
+        return Objects.isNull(jwtId)
+                || invalidatedTokenWriter.isPending(jwtId)
+                || authMetrics.revocationLookup().record(() -> revokedTokenFilter.isRevoked(jwtId));
+    }
+
+    /**
+     * Xác thực nhiều token cùng lúc
+     * - Verify chữ ký song song trên các CPU
+     * - Kiểm tra thu hồi cho tất cả jti bằng một truy vấn IN (...)
+     * @param tokens danh sách token
+     * @return lý do từ chối theo đúng thứ tự của tokens, null nếu token hợp lệ
+     */
+    public List<InvalidTokenException.Reason> verifyAll(List<String> tokens){
+        List<Verification> verifications = tokens.parallelStream()
+                .map(this::verifySignatureQuietly)
+                .toList();
+
+        Set<String> jwtIds = verifications.stream()
+                .filter(verification -> Objects.isNull(verification.reason()))
+                .map(verification -> verification.token().claims().getJWTID())
+                .collect(Collectors.toSet());
+
+        Set<String> revokedIds = new HashSet<>(invalidatedTokenWriter.findPending(jwtIds));
+        jwtIds.removeAll(revokedIds);
+        if(!jwtIds.isEmpty()){
+            revokedIds.addAll(authMetrics.revocationLookup().record(() -> revokedTokenFilter.findRevoked(jwtIds)));
+        }
+
+        return verifications.stream()
+                .map(verification -> Objects.isNull(verification.reason())
+                        && revokedIds.contains(verification.token().claims().getJWTID())
+                        ? InvalidTokenException.Reason.REVOKED
+                        : verification.reason())
+                .toList();
+    }
+
+    /**
+     * Verify chữ ký và hạn sử dụng, chưa kiểm tra danh sách token đã thu hồi
+     */
+    public VerifiedToken verifySignature(String token, boolean isRefresh) throws JOSEException, ParseException {
+        // Parse token: header được decode, payload vẫn ở dạng Base64
+        SignedJWT signedJWT = SignedJWT.parse(token);
+
+        // Lấy verifier theo kid, khóa không tồn tại hoặc đã hết rotation-window thì từ chối
+        JWSVerifier verifier = jwtKeyRing.verifier(signedJWT.getHeader());
+
+        if(Objects.isNull(verifier)){
+            throw new InvalidTokenException(InvalidTokenException.Reason.UNKNOWN_KEY);
+        }
+
+        // Xác thực chữ ký trên phần header.payload, chưa cần đọc claims
+        Timer.Sample sample = Timer.start();
+        boolean verified = signedJWT.verify(verifier);
+        sample.stop(authMetrics.signatureVerify());
+
+        if(!verified){
+            throw new InvalidTokenException(InvalidTokenException.Reason.BAD_SIGNATURE);
+        }
+
+        // Chỉ deserialize claims sau khi chữ ký hợp lệ
+        JWTClaimsSet claims = signedJWT.getJWTClaimsSet();
+
+        // Lấy thời gian hết hạn
+        Date expiredTime = (isRefresh && Objects.nonNull(claims.getIssueTime())) ?
+                Date.from(claims.getIssueTime()
+                        .toInstant()
+                        .plus(REFRESHABLE_DURATION, ChronoUnit.SECONDS))
+                : claims.getExpirationTime();
+
+        if(Objects.isNull(expiredTime) || !expiredTime.after(new Date())){
+            throw new InvalidTokenException(InvalidTokenException.Reason.EXPIRED);
+        }
+
+        return new VerifiedToken(token, signedJWT.getHeader(), claims);
+    }
+
+    private boolean isEpochRevoked(JWTClaimsSet claims){
+        return tokenEpochStore.isRevoked(
+                (String) claims.getClaim(TokenEpochStore.USER_ID_CLAIM),
+                (Number) claims.getClaim(TokenEpochStore.EPOCH_CLAIM));
+    }
+
+    /**
+     * Verify chữ ký, hạn sử dụng và epoch của một token trong batch, không ném exception
+     * - Token không có jti bị coi là đã thu hồi, giống verify()
+     */
+    private Verification verifySignatureQuietly(String token){
+        if(Objects.isNull(token)) return new Verification(null, InvalidTokenException.Reason.MALFORMED);
+
+        try {
+            VerifiedToken verifiedToken = verifySignature(token, false);
+            if(isEpochRevoked(verifiedToken.claims()) || Objects.isNull(verifiedToken.claims().getJWTID())){
+                return new Verification(verifiedToken, InvalidTokenException.Reason.REVOKED);
+            }
+            return new Verification(verifiedToken, null);
+        }catch (InvalidTokenException e){
+            return new Verification(null, e.getReason());
+        }catch (JOSEException | ParseException e){
+            return new Verification(null, InvalidTokenException.Reason.MALFORMED);
+        }
+    }
+
+    private record Verification(VerifiedToken token, InvalidTokenException.Reason reason) {
+    }
+}
@@ -0,0 +1,87 @@
+package com.demo.identity_service.service;
+
+import com.demo.identity_service.dto.projection.UserExportRow;
+import com.demo.identity_service.dto.response.UserExportResponse;
+import com.demo.identity_service.repository.UserRepository;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SequenceWriter;
+import lombok.AccessLevel;
+import lombok.RequiredArgsConstructor;
+import lombok.experimental.FieldDefaults;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.Objects;
+import java.util.stream.Stream;
+
+/**
+ * Ghi toàn bộ user ra dạng NDJSON (mỗi dòng một JSON object)
+ * - Đọc theo kiểu forward-only qua Stream, không giữ danh sách user trong bộ nhớ
+ * - Các dòng (user, role) liên tiếp của cùng một user được gộp lại trước khi ghi
+ */
+@Slf4j
+@Component
+@RequiredArgsConstructor
+@FieldDefaults(level = AccessLevel.PRIVATE, makeFinal = true)
+public class UserExporter {
+    UserRepository userRepository;
+    ObjectMapper objectMapper;
+
+    /**
+     * @param outputStream stream của response, không bị đóng sau khi ghi xong
+     * @return số user đã ghi
+     */
+    @Transactional(readOnly = true)
+    public long export(OutputStream outputStream) throws IOException {
+        long count = 0;
+
+        try(Stream<UserExportRow> rows = userRepository.streamAllForExport();
+            SequenceWriter writer = objectMapper.writer()
+                    .without(JsonGenerator.Feature.AUTO_CLOSE_TARGET)
+                    .withRootValueSeparator("\n")
+                    .writeValues(outputStream)){
+
+            UserExportResponse current = null;
+            Iterator<UserExportRow> iterator = rows.iterator();
+
+            while(iterator.hasNext()){
+                UserExportRow row = iterator.next();
+
+                if(Objects.isNull(current) || !current.getId().equals(row.getId().toString())){
+                    if(Objects.nonNull(current)){
+                        writer.write(current);
+                        count++;
+                    }
+                    current = UserExportResponse.builder()
+                            .id(row.getId().toString())
+                            .username(row.getUsername())
+                            .firstName(row.getFirstName())
+                            .lastName(row.getLastName())
+                            .dob(row.getDob())
+                            .roles(new ArrayList<>())
+                            .build();
+                }
+
+                if(Objects.nonNull(row.getRoleName())) current.getRoles().add(row.getRoleName());
+            }
+
+            if(Objects.nonNull(current)){
+                writer.write(current);
+                count++;
+            }
+            writer.flush();
+        }
+
+        // Dòng cuối cùng cũng kết thúc bằng "\n"
+        if(count > 0) outputStream.write('\n');
+
+        log.info("Exported {} users", count);
+        return count;
+    }
+}
@@ -0,0 +1,236 @@
+package com.demo.identity_service.service;
+
+import com.demo.identity_service.dto.request.UserCreationRequest;
+import com.demo.identity_service.dto.response.UserImportResponse;
+import com.demo.identity_service.dto.response.UserImportResult;
+import com.demo.identity_service.entity.User;
+import com.demo.identity_service.exception.ErrorCode;
+import com.demo.identity_service.mapper.UserMapper;
+import com.demo.identity_service.repository.UserRepository;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectReader;
+import jakarta.persistence.EntityManager;
+import jakarta.validation.ConstraintViolation;
+import jakarta.validation.Validator;
+import lombok.AccessLevel;
+import lombok.experimental.FieldDefaults;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Objects;
+import java.util.Set;
+
+/**
+ * Tạo user hàng loạt từ file NDJSON (mỗi dòng một UserCreationRequest)
+ * - Đọc và xử lý theo từng chunk, không giữ toàn bộ file trong bộ nhớ
+ * - Mỗi chunk: validate, kiểm tra trùng username bằng một truy vấn,
+ *   mã hóa mật khẩu song song trên PasswordHasher, insert bằng JDBC batch
+ */
+@Slf4j
+@Component
+@FieldDefaults(level = AccessLevel.PRIVATE, makeFinal = true)
+public class UserImporter {
+    private static final String MIN_ATTRIBUTE = "min";
+
+    UserRepository userRepository;
+    UserMapper userMapper;
+    PasswordHasher passwordHasher;
+    Validator validator;
+    EntityManager entityManager;
+    TransactionTemplate transactionTemplate;
+    ObjectReader requestReader;
+
+    int chunkSize;
+
+    public UserImporter(UserRepository userRepository,
+                        UserMapper userMapper,
+                        PasswordHasher passwordHasher,
+                        Validator validator,
+                        EntityManager entityManager,
+                        TransactionTemplate transactionTemplate,
+                        ObjectMapper objectMapper,
+                        @Value("${users.import.chunk-size:500}") int chunkSize) {
+        this.userRepository = userRepository;
+        this.userMapper = userMapper;
+        this.passwordHasher = passwordHasher;
+        this.validator = validator;
+        this.entityManager = entityManager;
+        this.transactionTemplate = transactionTemplate;
+        this.requestReader = objectMapper.readerFor(UserCreationRequest.class);
+        this.chunkSize = chunkSize;
+    }
+
+    /**
+     * @param inputStream nội dung NDJSON
+     * @return kết quả của từng dòng
+     */
+    public UserImportResponse importUsers(InputStream inputStream) throws IOException {
+        List<UserImportResult> results = new ArrayList<>();
+        // Username đã xuất hiện ở các dòng trước trong cùng file
+        Set<String> seenUsernames = new HashSet<>();
+        List<Record> chunk = new ArrayList<>(chunkSize);
+
+        long start = System.nanoTime();
+        BufferedReader reader = new BufferedReader(new InputStreamReader(inputStream, StandardCharsets.UTF_8));
+
+        String line;
+        int lineNumber = 0;
+        while((line = reader.readLine()) != null){
+            lineNumber++;
+            if(line.isBlank()) continue;
+
+            UserImportResult result = UserImportResult.builder().line(lineNumber).build();
+            results.add(result);
+
+            try {
+                chunk.add(new Record(requestReader.readValue(line), result));
+            } catch (JsonProcessingException e) {
+                fail(result, ErrorCode.INVALID_RECORD, ErrorCode.INVALID_RECORD.getMessage());
+                continue;
+            }
+
+            if(chunk.size() >= chunkSize){
+                importChunk(chunk, seenUsernames);
+                chunk = new ArrayList<>(chunkSize);
+            }
+        }
+
+        if(!chunk.isEmpty()) importChunk(chunk, seenUsernames);
+
+        int created = (int) results.stream().filter(result -> Objects.nonNull(result.getId())).count();
+        log.info("Imported {}/{} users in {} ms",
+                created, results.size(), (System.nanoTime() - start) / 1_000_000);
+
+        return UserImportResponse.builder()
+                .total(results.size())
+                .created(created)
+                .failed(results.size() - created)
+                .results(results)
+                .build();
+    }
+
+    private void importChunk(List<Record> chunk, Set<String> seenUsernames){
+        // Validate và loại bỏ username trùng trong file
+        List<Record> valid = new ArrayList<>(chunk.size());
+        for(Record record : chunk){
+            record.result().setUsername(record.request().getUsername());
+
+            if(validate(record) && seenUsernames.add(record.request().getUsername())){
+                valid.add(record);
+            } else if(record.result().getCode() == 1000){
+                fail(record.result(), ErrorCode.USER_EXISTED, ErrorCode.USER_EXISTED.getMessage());
+            }
+        }
+
+        // Kiểm tra trùng với DB bằng một truy vấn cho cả chunk
+        Set<String> existing = valid.isEmpty()
+                ? Set.of()
+                : userRepository.findExistingUsernames(valid.stream().map(record -> record.request().getUsername()).toList());
+
+        List<Record> pending = new ArrayList<>(valid.size());
+        for(Record record : valid){
+            if(existing.contains(record.request().getUsername())){
+                fail(record.result(), ErrorCode.USER_EXISTED, ErrorCode.USER_EXISTED.getMessage());
+            } else {
+                pending.add(record);
+            }
+        }
+
+        if(pending.isEmpty()) return;
+
+        List<String> encodedPasswords = passwordHasher.encodeAll(
+                pending.stream().map(record -> record.request().getPassword()).toList());
+
+        List<User> users = new ArrayList<>(pending.size());
+        for(int i = 0; i < pending.size(); i++){
+            User user = userMapper.toUser(pending.get(i).request());
+            user.setPassword(encodedPasswords.get(i));
+            users.add(user);
+        }
+
+        try {
+            transactionTemplate.executeWithoutResult(status -> {
+                userRepository.saveAll(users);
+                // Flush qua repository để lỗi unique index được dịch thành DataIntegrityViolationException
+                userRepository.flush();
+                entityManager.clear();
+            });
+        } catch (DataIntegrityViolationException e) {
+            // Có request khác tạo trùng username trong lúc import: insert lại từng dòng
+            log.warn("Batch insert failed, retrying {} users one by one", users.size());
+            insertOneByOne(pending, users);
+            return;
+        }
+
+        for(int i = 0; i < pending.size(); i++){
+            pending.get(i).result().setId(users.get(i).getId().toString());
+        }
+    }
+
+    private void insertOneByOne(List<Record> pending, List<User> users){
+        for(int i = 0; i < pending.size(); i++){
+            User user = users.get(i);
+            user.setId(null);
+
+            try {
+                User saved = transactionTemplate.execute(status -> userRepository.saveAndFlush(user));
+                pending.get(i).result().setId(saved.getId().toString());
+            } catch (DataIntegrityViolationException e) {
+                fail(pending.get(i).result(), ErrorCode.USER_EXISTED, ErrorCode.USER_EXISTED.getMessage());
+            }
+        }
+        entityManager.clear();
+    }
+
+    private boolean validate(Record record){
+        UserCreationRequest request = record.request();
+
+        // @Size cho phép null, nhưng user import bắt buộc phải có username và mật khẩu
+        if(Objects.isNull(request.getUsername())){
+            fail(record.result(), ErrorCode.USERNAME_INVALID, ErrorCode.USERNAME_INVALID.getMessage());
+            return false;
+        }
+        if(Objects.isNull(request.getPassword())){
+            fail(record.result(), ErrorCode.PASSWORD_INVALID, ErrorCode.PASSWORD_INVALID.getMessage());
+            return false;
+        }
+
+        Set<ConstraintViolation<UserCreationRequest>> violations = validator.validate(request);
+        if(violations.isEmpty()) return true;
+
+        // Giống GlobalExceptionHandler: message của constraint là tên ErrorCode
+        ConstraintViolation<UserCreationRequest> violation = violations.iterator().next();
+        ErrorCode errorCode = ErrorCode.INVALID_KEY;
+        try {
+            errorCode = ErrorCode.valueOf(violation.getMessage());
+        } catch (IllegalArgumentException ignored) {
+        }
+
+        Object minValue = violation.getConstraintDescriptor().getAttributes().get(MIN_ATTRIBUTE);
+        String message = Objects.nonNull(minValue)
+                ? errorCode.getMessage().replace("{" + MIN_ATTRIBUTE + "}", String.valueOf(minValue))
+                : errorCode.getMessage();
+
+        fail(record.result(), errorCode, message);
+        return false;
+    }
+
+    private void fail(UserImportResult result, ErrorCode errorCode, String message){
+        result.setCode(errorCode.getCode());
+        result.setMessage(message);
+    }
+
+    private record Record(UserCreationRequest request, UserImportResult result) {}
+}
@@ -2,6 +2,9 @@ package com.demo.identity_service.service;
 
 import com.demo.identity_service.dto.request.UserCreationRequest;
 import com.demo.identity_service.dto.request.UserUpdateRequest;
+import com.demo.identity_service.dto.response.CursorPageResponse;
+import com.demo.identity_service.dto.response.TokenEpochResponse;
+import com.demo.identity_service.dto.response.UserImportResponse;
 import com.demo.identity_service.dto.response.UserResponse;
 import com.demo.identity_service.entity.User;
 import com.demo.identity_service.enums.Role;
@@ -13,19 +16,27 @@ import com.demo.identity_service.repository.UserRepository;
 import lombok.AccessLevel;
 import lombok.RequiredArgsConstructor;
 import lombok.experimental.FieldDefaults;
+import lombok.experimental.NonFinal;
 import lombok.extern.slf4j.Slf4j;
-import org.springframework.beans.factory.annotation.Autowired;
+import org.hibernate.exception.ConstraintViolationException;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Pageable;
 import org.springframework.security.access.prepost.PostAuthorize;
 import org.springframework.security.access.prepost.PreAuthorize;
 import org.springframework.security.core.context.SecurityContextHolder;
-import org.springframework.security.crypto.bcrypt.BCryptPasswordEncoder;
-import org.springframework.security.crypto.password.PasswordEncoder;
 import org.springframework.stereotype.Service;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
+import java.io.IOException;
+import java.io.InputStream;
 import java.time.LocalDate;
 import java.util.HashSet;
 import java.util.List;
-import java.util.Optional;
+import java.util.Objects;
+import java.util.UUID;
+import java.util.zip.GZIPOutputStream;
 
 @Service
 @RequiredArgsConstructor
@@ -36,13 +47,17 @@ public class UserService {
     UserRepository userRepository;
     RoleRepository roleRepository;
     UserMapper userMapper;
-    PasswordEncoder passwordEncoder;
+    PasswordHasher passwordHasher;
+    UserExporter userExporter;
+    UserImporter userImporter;
+    TokenEpochStore tokenEpochStore;
+    AuthoritiesVersionStore authoritiesVersionStore;
 
-    public User createUser(UserCreationRequest request){
-        if(userRepository.existsByUsername(request.getUsername())){
-            throw new AppException(ErrorCode.USER_EXISTED);
-        }
+    @NonFinal
+    @Value("${users.page.max-size:500}")
+    protected int PAGE_MAX_SIZE;
 
+    public User createUser(UserCreationRequest request){
         //Pass data from dto to entity using mapper
         User user = userMapper.toUser(request);
 
@@ -50,14 +65,27 @@ public class UserService {
         //PasswordEncoder passwordEncoder = new BCryptPasswordEncoder(10);
 
         //Bắt đầu tiến hành mã hóa password của user từ request của dto về entity sử dụng hàm encode
-        user.setPassword(passwordEncoder.encode(request.getPassword()));
+        user.setPassword(passwordHasher.encode(request.getPassword()));
 
         HashSet<String> roles = new HashSet<>();
         roles.add(Role.USER.name());
         //user.setRoles(roles);
 
         //Save the object into database through repository
-        return userRepository.save(user);
+        //Trùng username được phát hiện bởi unique index, không cần kiểm tra trước bằng existsByUsername
+        try {
+            return userRepository.saveAndFlush(user);
+        } catch (DataIntegrityViolationException e) {
+            if(isUsernameConflict(e)) throw new AppException(ErrorCode.USER_EXISTED);
+            throw e;
+        }
+    }
+
+    private boolean isUsernameConflict(DataIntegrityViolationException exception){
+        // Tên constraint có thể kèm tên bảng hoặc bị đổi hoa/thường tùy DB (vd: user.uk_user_username)
+        return exception.getCause() instanceof ConstraintViolationException constraintViolation
+                && Objects.nonNull(constraintViolation.getConstraintName())
+                && constraintViolation.getConstraintName().toLowerCase().contains(User.USERNAME_CONSTRAINT);
     }
 
     /**Create user using Builder annotation (@Builder)*/
@@ -86,33 +114,119 @@ public class UserService {
         return userMapper.toUserResponse(user);
     }
 
+    /**
+     * Lấy danh sách user theo từng trang (keyset pagination theo id)
+     * @param cursor id của user cuối cùng ở trang trước, null với trang đầu tiên
+     * @param size số user mỗi trang, tối đa users.page.max-size
+     * @return trang user kèm cursor của trang tiếp theo
+     */
     //@PreAuthorize("hasRole('ADMIN')")
     @PreAuthorize("hasAuthority('APPROVE_POST')")
-    public List<User> getAllUsers(){
+    public CursorPageResponse<UserResponse> getAllUsers(String cursor, int size){
         log.info("In method get Users");
-        return userRepository.findAll();
+
+        if(size < 1 || size > PAGE_MAX_SIZE){
+            throw new AppException(ErrorCode.INVALID_PAGE_SIZE);
+        }
+
+        // Lấy dư 1 dòng để biết còn trang tiếp theo hay không
+        Pageable pageable = PageRequest.of(0, size + 1);
+        List<UserResponse> users = Objects.isNull(cursor) || cursor.isBlank()
+                ? userRepository.findPage(pageable)
+                : userRepository.findPageAfter(parseId(cursor, ErrorCode.INVALID_CURSOR), pageable);
+
+        boolean hasNext = users.size() > size;
+        if(hasNext) users = users.subList(0, size);
+
+        return CursorPageResponse.<UserResponse>builder()
+                .items(users)
+                .nextCursor(hasNext ? users.getLast().getId() : null)
+                .hasNext(hasNext)
+                .build();
+    }
+
+    /**
+     * Tạo user hàng loạt từ nội dung NDJSON, mỗi dòng một UserCreationRequest
+     * @param inputStream nội dung request
+     * @return kết quả của từng dòng
+     */
+    @PreAuthorize("hasRole('ADMIN')")
+    public UserImportResponse importUsers(InputStream inputStream) throws IOException {
+        return userImporter.importUsers(inputStream);
+    }
+
+    /**
+     * Export toàn bộ user ra dạng NDJSON
+     * - Kiểm tra quyền trên request thread, việc ghi dữ liệu chạy sau khi controller trả về
+     * @param gzip nén output bằng gzip
+     */
+    @PreAuthorize("hasAuthority('APPROVE_POST')")
+    public StreamingResponseBody exportUsers(boolean gzip){
+        return outputStream -> {
+            if(!gzip){
+                userExporter.export(outputStream);
+                return;
+            }
+
+            GZIPOutputStream gzipOutputStream = new GZIPOutputStream(outputStream, 8192);
+            userExporter.export(gzipOutputStream);
+            gzipOutputStream.finish();
+        };
     }
 
     @PostAuthorize("returnObject.username == authentication.name")
     public UserResponse findUserById(String id){
-        return userMapper.toUserResponse(userRepository.findById(id)
+        return userMapper.toUserResponse(userRepository.findById(parseId(id, ErrorCode.USER_NOT_EXISTED))
                 .orElseThrow(() -> new RuntimeException("User not found")));
     }
 
     public UserResponse updateUser(String userId, UserUpdateRequest request){
-        User user = userRepository.findById(userId)
+        User user = userRepository.findById(parseId(userId, ErrorCode.USER_NOT_EXISTED))
                 .orElseThrow(() -> new RuntimeException("User not found"));
 
         userMapper.updateUser(user, request);
-        user.setPassword(passwordEncoder.encode(request.getPassword()));
+        user.setPassword(passwordHasher.encode(request.getPassword()));
 
         var roles = roleRepository.findAllById(request.getRoles());
         user.setRoles(new HashSet<>(roles));
 
-        return userMapper.toUserResponse(userRepository.save(user));
+        var savedUser = userRepository.save(user);
+        // Token đang lưu hành phải load lại quyền ở lần refresh tiếp theo
+        authoritiesVersionStore.userChanged(savedUser.getUsername());
+
+        return userMapper.toUserResponse(savedUser);
+    }
+
+    /**
+     * Thu hồi mọi token đã cấp cho một user (vd: tài khoản bị lộ), không cần biết các token đã cấp
+     * @param userId id của user
+     * @return epoch mới của user
+     */
+    @PreAuthorize("hasRole('ADMIN')")
+    public TokenEpochResponse revokeTokens(String userId){
+        UUID id = parseId(userId, ErrorCode.USER_NOT_EXISTED);
+        if(!userRepository.existsById(id)) throw new AppException(ErrorCode.USER_NOT_EXISTED);
+
+        return TokenEpochResponse.builder()
+                .userId(id.toString())
+                .epoch(tokenEpochStore.bump(id))
+                .build();
     }
 
     public void deleteUserById(String userId){
-        userRepository.deleteById(userId);
+        userRepository.findById(parseId(userId, ErrorCode.USER_NOT_EXISTED)).ifPresent(user -> {
+            userRepository.delete(user);
+            // Refresh bằng token cũ phải load lại user và bị từ chối
+            authoritiesVersionStore.userChanged(user.getUsername());
+        });
+    }
+
+    // Id bên ngoài là chuỗi UUID, chuỗi sai định dạng không thể là id của user nào
+    private UUID parseId(String id, ErrorCode errorCode){
+        try {
+            return UUID.fromString(id);
+        } catch (IllegalArgumentException e) {
+            throw new AppException(errorCode);
+        }
     }
 }
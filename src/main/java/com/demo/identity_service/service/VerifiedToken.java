@@ -0,0 +1,35 @@
+package com.demo.identity_service.service;
+
+import com.nimbusds.jose.JWSHeader;
+import com.nimbusds.jwt.JWTClaimsSet;
+import org.springframework.security.oauth2.jwt.Jwt;
+import org.springframework.security.oauth2.jwt.MappedJwtClaimSetConverter;
+
+import java.util.Collections;
+import java.util.Map;
+
+/**
+ * Kết quả của TokenVerifier: token đã được parse một lần, đã verify chữ ký,
+ * hạn sử dụng và trạng thái thu hồi
+ * @param token chuỗi JWT gốc
+ * @param header header đã parse
+ * @param claims claims đã parse
+ */
+public record VerifiedToken(String token, JWSHeader header, JWTClaimsSet claims) {
+    // Chuyển exp/iat/nbf sang Instant giống NimbusJwtDecoder
+    private static final MappedJwtClaimSetConverter CLAIM_SET_CONVERTER =
+            MappedJwtClaimSetConverter.withDefaults(Collections.emptyMap());
+
+    /**
+     * Tạo Jwt cho Spring Security từ header và claims đã parse, không parse lại token
+     * @return Jwt tương ứng
+     */
+    public Jwt toJwt(){
+        Map<String, Object> jwtClaims = CLAIM_SET_CONVERTER.convert(claims.toJSONObject());
+
+        return Jwt.withTokenValue(token)
+                .headers(headers -> headers.putAll(header.toJSONObject()))
+                .claims(claimSet -> claimSet.putAll(jwtClaims))
+                .build();
+    }
+}
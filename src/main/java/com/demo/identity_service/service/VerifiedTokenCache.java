@@ -0,0 +1,151 @@
+package com.demo.identity_service.service;
+
+import lombok.AccessLevel;
+import lombok.experimental.FieldDefaults;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.security.oauth2.jwt.Jwt;
+import org.springframework.stereotype.Component;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.Instant;
+import java.util.Base64;
+import java.util.Date;
+import java.util.Objects;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Cache các JWT đã được xác thực thành công
+ * - Key là SHA-256 của token (không giữ token gốc làm key)
+ * - Mỗi entry hết hạn đúng tại thời điểm exp của token
+ * - Entry bị xóa ngay khi jti của token bị thu hồi (logout/refresh) trên instance này,
+ *   token bị thu hồi trên instance khác bị CustomJWTDecoder từ chối khi lấy từ cache
+ * - CustomJWTDecoder cũng từ chối entry có khóa ký đã bị loại khỏi JwtKeyRing, và không cache token không có kid
+ */
+@Slf4j
+@Component
+@FieldDefaults(level = AccessLevel.PRIVATE, makeFinal = true)
+public class VerifiedTokenCache {
+    // Dọn entry hết hạn tối đa 1 lần/giây
+    private static final long SWEEP_INTERVAL_MILLIS = 1000;
+
+    ConcurrentHashMap<String, Entry> entries = new ConcurrentHashMap<>();
+    // jti -> digest, dùng để xóa entry khi token bị thu hồi
+    ConcurrentHashMap<String, String> digestsByJwtId = new ConcurrentHashMap<>();
+    // jti đã bị thu hồi -> exp, chặn trường hợp put() chạy sau evict()
+    ConcurrentHashMap<String, Instant> revokedJwtIds = new ConcurrentHashMap<>();
+    AtomicLong lastSweep = new AtomicLong();
+
+    int maxSize;
+
+    public VerifiedTokenCache(@Value("${jwt.cache.max-size:10000}") int maxSize) {
+        this.maxSize = maxSize;
+    }
+
+    /**
+     * Lấy JWT đã xác thực từ cache
+     * @param token chuỗi JWT
+     * @return Jwt nếu có trong cache và chưa hết hạn, ngược lại null
+     */
+    public Jwt get(String token){
+        String key = digest(token);
+        Entry entry = entries.get(key);
+
+        if(Objects.isNull(entry)) return null;
+
+        if(!entry.expiresAt().isAfter(Instant.now())){
+            remove(key, entry);
+            return null;
+        }
+
+        return entry.jwt();
+    }
+
+    /**
+     * Lưu JWT đã xác thực vào cache
+     * @param token chuỗi JWT
+     * @param jwt kết quả decode của token
+     */
+    public void put(String token, Jwt jwt){
+        Instant expiresAt = jwt.getExpiresAt();
+        if(Objects.isNull(expiresAt) || !expiresAt.isAfter(Instant.now())) return;
+
+        if(entries.size() >= maxSize){
+            sweepExpired();
+            // Cache vẫn đầy: bỏ qua, request sau sẽ xác thực lại bình thường
+            if(entries.size() >= maxSize) return;
+        }
+
+        String key = digest(token);
+        String jwtId = jwt.getId();
+        Entry entry = new Entry(jwt, expiresAt, jwtId);
+
+        entries.put(key, entry);
+
+        if(Objects.nonNull(jwtId)){
+            digestsByJwtId.put(jwtId, key);
+
+            // Token vừa bị thu hồi trong lúc đang xác thực
+            if(revokedJwtIds.containsKey(jwtId)){
+                remove(key, entry);
+            }
+        }
+    }
+
+    /**
+     * Xóa entry của token đã bị thu hồi
+     * @param jwtId jti của token
+     * @param expirationTime thời gian hết hạn của token
+     */
+    public void evict(String jwtId, Date expirationTime){
+        if(Objects.isNull(jwtId)) return;
+
+        Instant expiresAt = Objects.nonNull(expirationTime) ? expirationTime.toInstant() : Instant.now();
+        revokedJwtIds.put(jwtId, expiresAt);
+
+        String key = digestsByJwtId.remove(jwtId);
+        if(Objects.nonNull(key)){
+            entries.remove(key);
+        }
+
+        sweepExpired();
+    }
+
+    public int size(){
+        return entries.size();
+    }
+
+    private void remove(String key, Entry entry){
+        if(entries.remove(key, entry) && Objects.nonNull(entry.jwtId())){
+            digestsByJwtId.remove(entry.jwtId(), key);
+        }
+    }
+
+    private void sweepExpired(){
+        long now = System.currentTimeMillis();
+        long last = lastSweep.get();
+
+        if(now - last < SWEEP_INTERVAL_MILLIS || !lastSweep.compareAndSet(last, now)) return;
+
+        Instant instant = Instant.ofEpochMilli(now);
+        entries.forEach((key, entry) -> {
+            if(!entry.expiresAt().isAfter(instant)) remove(key, entry);
+        });
+        revokedJwtIds.values().removeIf(expiresAt -> !expiresAt.isAfter(instant));
+    }
+
+    private String digest(String token){
+        try {
+            MessageDigest messageDigest = MessageDigest.getInstance("SHA-256");
+            byte[] hash = messageDigest.digest(token.getBytes(StandardCharsets.US_ASCII));
+            return Base64.getUrlEncoder().withoutPadding().encodeToString(hash);
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private record Entry(Jwt jwt, Instant expiresAt, String jwtId) {}
+}
@@ -0,0 +1,26 @@
+-- Chuyển bảng invalidated_token sang layout partition theo ngày hết hạn
+-- Dùng cùng với jwt.revocation.sweeper.mode=partition: sweeper sẽ drop partition đã hết hạn
+-- và tạo trước partition cho jwt.revocation.sweeper.partitions-ahead ngày tới.
+--
+-- Lưu ý:
+-- - MySQL yêu cầu cột partition nằm trong khóa chính, nên khóa chính đổi thành (id, expiration_time)
+-- - Ranh giới partition tính theo TO_DAYS(expiration_time), server MySQL cần chạy timezone UTC
+-- - Script chỉ tạo partition của ngày chạy script (tính từ UTC_DATE()) và pmax. Các dòng cũ hơn nằm
+--   trong partition của ngày chạy script và bị drop cùng partition đó. Lần sweep đầu tiên tạo
+--   partition cho các ngày tới bằng cách tách pmax
+-- - Sweep partition chạy DDL, các instance dùng GET_LOCK để chỉ một instance chạy tại một thời điểm
+
+ALTER TABLE invalidated_token
+    DROP PRIMARY KEY,
+    ADD PRIMARY KEY (id, expiration_time);
+
+-- VALUES LESS THAN chỉ nhận hằng số: dựng câu lệnh từ ngày hiện tại rồi chạy bằng PREPARE
+SET @partitioning = CONCAT(
+    'ALTER TABLE invalidated_token PARTITION BY RANGE (TO_DAYS(expiration_time)) (',
+    'PARTITION p', DATE_FORMAT(UTC_DATE(), '%Y%m%d'),
+    ' VALUES LESS THAN (', TO_DAYS(UTC_DATE()) + 1, '), ',
+    'PARTITION pmax VALUES LESS THAN MAXVALUE)');
+
+PREPARE partition_statement FROM @partitioning;
+EXECUTE partition_statement;
+DEALLOCATE PREPARE partition_statement;
@@ -0,0 +1,52 @@
+-- Chuyển user.id từ CHAR(36) (UUID v4 dạng chuỗi) sang BINARY(16)
+-- Bắt buộc chạy trước khi deploy phiên bản dùng UuidV7: ddl-auto=update không đổi kiểu cột đã tồn tại.
+--
+-- Lưu ý:
+-- - Dừng ứng dụng trong lúc chạy script, yêu cầu MySQL 8 (UUID_TO_BIN)
+-- - Id cũ giữ nguyên giá trị (UUID_TO_BIN không đảo byte, giống cách Hibernate lưu UUID),
+--   nên /users/{userId} của user cũ không đổi. Chỉ user mới được sinh id dạng v7
+-- - Token đang lưu hành không bị ảnh hưởng vì claim sub là username
+
+-- 1. Cột id mới cho user và user_roles
+ALTER TABLE user ADD COLUMN id_bin BINARY(16) NULL;
+UPDATE user SET id_bin = UUID_TO_BIN(id);
+
+ALTER TABLE user_roles ADD COLUMN user_id_bin BINARY(16) NULL;
+UPDATE user_roles ur
+    JOIN user u ON u.id = ur.user_id
+SET ur.user_id_bin = u.id_bin;
+
+-- 2. Xóa foreign key user_roles.user_id -> user.id (tên do Hibernate sinh ra)
+SELECT CONCAT('ALTER TABLE user_roles DROP FOREIGN KEY ', constraint_name)
+INTO @drop_fk
+FROM information_schema.key_column_usage
+WHERE table_schema = DATABASE()
+  AND table_name = 'user_roles'
+  AND column_name = 'user_id'
+  AND referenced_table_name = 'user'
+LIMIT 1;
+
+PREPARE drop_fk FROM @drop_fk;
+EXECUTE drop_fk;
+DEALLOCATE PREPARE drop_fk;
+
+-- 3. Thay cột cũ bằng cột mới
+ALTER TABLE user_roles
+    DROP PRIMARY KEY,
+    DROP COLUMN user_id,
+    RENAME COLUMN user_id_bin TO user_id,
+    MODIFY user_id BINARY(16) NOT NULL,
+    ADD PRIMARY KEY (user_id, roles_name);
+
+ALTER TABLE user
+    DROP PRIMARY KEY,
+    DROP COLUMN id,
+    RENAME COLUMN id_bin TO id,
+    MODIFY id BINARY(16) NOT NULL FIRST,
+    ADD PRIMARY KEY (id);
+
+-- 4. Tạo lại foreign key
+ALTER TABLE user_roles
+    ADD CONSTRAINT fk_user_roles_user FOREIGN KEY (user_id) REFERENCES user (id);
+
+-- 5. Kiểm tra: SELECT BIN_TO_UUID(id), username FROM user LIMIT 10;
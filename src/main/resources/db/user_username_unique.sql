@@ -0,0 +1,21 @@
+-- Thêm unique index cho user.username trên DB đã có dữ liệu
+-- ddl-auto=update chỉ tạo được constraint khi bảng không còn username trùng,
+-- chạy script này trước khi deploy nếu DB cũ đã có user trùng tên.
+--
+-- Lưu ý:
+-- - Với mỗi username trùng, giữ lại bản ghi có id nhỏ nhất, các bản ghi còn lại bị đổi tên
+--   thành <username>#<id> để không mất dữ liệu, cần xử lý thủ công sau đó
+-- - Role của các user bị đổi tên vẫn được giữ nguyên trong bảng user_roles
+
+UPDATE user u
+    JOIN (
+        SELECT username, MIN(id) AS keep_id
+        FROM user
+        GROUP BY username
+        HAVING COUNT(*) > 1
+    ) duplicated ON duplicated.username = u.username
+SET u.username = CONCAT(u.username, '#', u.id)
+WHERE u.id <> duplicated.keep_id;
+
+ALTER TABLE user
+    ADD CONSTRAINT uk_user_username UNIQUE (username);
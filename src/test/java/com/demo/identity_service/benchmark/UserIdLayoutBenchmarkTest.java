@@ -0,0 +1,143 @@
+package com.demo.identity_service.benchmark;
+
+import com.demo.identity_service.entity.UuidV7Generator;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabase;
+import org.springframework.boot.test.autoconfigure.jdbc.JdbcTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.function.Supplier;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+/**
+ * So sánh 2 cách lưu khóa chính của user: CHAR(36) + UUID v4 và BINARY(16) + UUID v7
+ * - Đo thời gian insert (kèm một dòng user_roles mỗi user) và lookup theo khóa chính có join user_roles
+ * - Chạy bằng: mvn test -Pbenchmark [-Dbenchmark.rows=500000] [-Dspring.datasource.url=jdbc:mysql://...]
+ *   Kết quả trên H2 chỉ mang tính tham khảo, cần chạy trên MySQL/InnoDB để thấy ảnh hưởng tới clustered index
+ */
+@Tag("benchmark")
+@JdbcTest
+@AutoConfigureTestDatabase(replace = AutoConfigureTestDatabase.Replace.NONE)
+@Transactional(propagation = Propagation.NOT_SUPPORTED)
+class UserIdLayoutBenchmarkTest {
+    private static final int ROWS = Integer.getInteger("benchmark.rows", 100_000);
+    private static final int LOOKUPS = Integer.getInteger("benchmark.lookups", 20_000);
+    private static final int BATCH_SIZE = 1000;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @AfterEach
+    void dropTables(){
+        for(Layout layout : Layout.values()){
+            jdbcTemplate.execute("drop table if exists " + layout.rolesTable());
+            jdbcTemplate.execute("drop table if exists " + layout.userTable());
+        }
+    }
+
+    @Test
+    void compareLayouts(){
+        // Warm-up JIT và connection pool trước khi đo
+        for(Layout layout : Layout.values()){
+            run(layout, Math.max(1, ROWS / 10), Math.max(1, LOOKUPS / 10));
+        }
+
+        for(Layout layout : Layout.values()){
+            Result result = run(layout, ROWS, LOOKUPS);
+            System.out.printf("%-12s insert: %,8d rows/s   lookup: %,8d ns/op%n",
+                    layout, result.insertsPerSecond(), result.nanosPerLookup());
+        }
+    }
+
+    private Result run(Layout layout, int rows, int lookups){
+        jdbcTemplate.execute("drop table if exists " + layout.rolesTable());
+        jdbcTemplate.execute("drop table if exists " + layout.userTable());
+        jdbcTemplate.execute("create table " + layout.userTable() + " (id " + layout.columnType()
+                + " not null, username varchar(255), primary key (id))");
+        jdbcTemplate.execute("create table " + layout.rolesTable() + " (user_id " + layout.columnType()
+                + " not null, roles_name varchar(255) not null, primary key (user_id, roles_name))");
+
+        List<Object> ids = new ArrayList<>(rows);
+        long start = System.nanoTime();
+
+        for(int from = 0; from < rows; from += BATCH_SIZE){
+            List<Object[]> users = new ArrayList<>(BATCH_SIZE);
+            List<Object[]> roles = new ArrayList<>(BATCH_SIZE);
+
+            for(int i = from; i < Math.min(from + BATCH_SIZE, rows); i++){
+                Object id = layout.newId();
+                ids.add(id);
+                users.add(new Object[]{id, "user" + i});
+                roles.add(new Object[]{id, "USER"});
+            }
+
+            jdbcTemplate.batchUpdate("insert into " + layout.userTable() + " (id, username) values (?, ?)", users);
+            jdbcTemplate.batchUpdate("insert into " + layout.rolesTable() + " (user_id, roles_name) values (?, ?)", roles);
+        }
+
+        long insertNanos = System.nanoTime() - start;
+
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        String lookup = "select u.username, r.roles_name from " + layout.userTable() + " u left join "
+                + layout.rolesTable() + " r on r.user_id = u.id where u.id = ?";
+        int found = 0;
+
+        start = System.nanoTime();
+        for(int i = 0; i < lookups; i++){
+            found += jdbcTemplate.queryForList(lookup, ids.get(random.nextInt(ids.size()))).size();
+        }
+        long lookupNanos = System.nanoTime() - start;
+
+        assertEquals(lookups, found);
+        return new Result(rows * 1_000_000_000L / insertNanos, lookupNanos / lookups);
+    }
+
+    private enum Layout {
+        CHAR36_V4("char(36)", () -> UUID.randomUUID().toString()),
+        BINARY16_V7("binary(16)", () -> toBytes(UuidV7Generator.generate()));
+
+        private final String columnType;
+        private final Supplier<Object> idSupplier;
+
+        Layout(String columnType, Supplier<Object> idSupplier){
+            this.columnType = columnType;
+            this.idSupplier = idSupplier;
+        }
+
+        String columnType(){
+            return columnType;
+        }
+
+        Object newId(){
+            return idSupplier.get();
+        }
+
+        String userTable(){
+            return "bench_user_" + name().toLowerCase();
+        }
+
+        String rolesTable(){
+            return "bench_user_roles_" + name().toLowerCase();
+        }
+
+        private static byte[] toBytes(UUID uuid){
+            return ByteBuffer.allocate(16)
+                    .putLong(uuid.getMostSignificantBits())
+                    .putLong(uuid.getLeastSignificantBits())
+                    .array();
+        }
+    }
+
+    private record Result(long insertsPerSecond, long nanosPerLookup) {}
+}
@@ -0,0 +1,138 @@
+package com.demo.identity_service.benchmark;
+
+import com.demo.identity_service.IdentityServiceApplication;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.boot.web.context.WebServerApplicationContext;
+import org.springframework.context.ConfigurableApplicationContext;
+
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.LongAdder;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+/**
+ * So sánh throughput và độ trễ p99 khi chạy request trên platform thread (Tomcat pool mặc định) và virtual thread
+ * - Mỗi chế độ khởi động một instance riêng, nhiều client đồng thời gọi GET /users/myInfo (xác thực JWT + truy vấn DB)
+ * - Chạy bằng: mvn test -Pbenchmark -Dtest=VirtualThreadComparisonTest [-Dbenchmark.concurrency=1000]
+ *   [-Dbenchmark.duration=20] [-Dspring.datasource.url=jdbc:mysql://...]
+ */
+@Tag("benchmark")
+class VirtualThreadComparisonTest {
+    private static final int CONCURRENCY = Integer.getInteger("benchmark.concurrency", 500);
+    private static final int DURATION_SECONDS = Integer.getInteger("benchmark.duration", 10);
+    private static final int WARMUP_SECONDS = Integer.getInteger("benchmark.warmup", 3);
+
+    private final ObjectMapper objectMapper = new ObjectMapper();
+
+    @Test
+    void compareThreadModels() throws Exception {
+        List<String> report = new ArrayList<>();
+
+        for(boolean virtual : new boolean[]{false, true}){
+            // Truyền dạng tham số dòng lệnh để ghi đè application.yml
+            try(ConfigurableApplicationContext context = new SpringApplicationBuilder(IdentityServiceApplication.class)
+                    .run("--server.port=0",
+                            "--spring.threads.virtual.enabled=" + virtual,
+                            // Token phải sống hết thời gian đo
+                            "--jwt.valid-duration=3600",
+                            "--logging.level.root=WARN")){
+                int port = ((WebServerApplicationContext) context).getWebServer().getPort();
+                Result result = run("http://localhost:" + port + "/identity");
+
+                report.add(String.format("%-9s throughput: %,8.0f req/s   p50: %,6.1f ms   p99: %,6.1f ms   errors: %d",
+                        virtual ? "virtual" : "platform", result.throughput(), result.p50Millis(), result.p99Millis(), result.errors()));
+            }
+        }
+
+        System.out.printf("concurrency = %d, duration = %d s%n", CONCURRENCY, DURATION_SECONDS);
+        report.forEach(System.out::println);
+    }
+
+    private Result run(String baseUrl) throws Exception {
+        try(HttpClient client = HttpClient.newBuilder()
+                .executor(Executors.newVirtualThreadPerTaskExecutor())
+                .connectTimeout(Duration.ofSeconds(10))
+                .build()){
+
+            HttpResponse<String> login = client.send(HttpRequest.newBuilder(URI.create(baseUrl + "/auth/token"))
+                            .header("Content-Type", "application/json")
+                            .POST(HttpRequest.BodyPublishers.ofString("{\"username\":\"admin\",\"password\":\"admin\"}"))
+                            .build(),
+                    HttpResponse.BodyHandlers.ofString());
+            assertEquals(200, login.statusCode());
+            String token = objectMapper.readTree(login.body()).path("result").path("token").asText();
+
+            HttpRequest request = HttpRequest.newBuilder(URI.create(baseUrl + "/users/myInfo"))
+                    .header("Authorization", "Bearer " + token)
+                    .GET()
+                    .build();
+
+            load(client, request, WARMUP_SECONDS);
+            return load(client, request, DURATION_SECONDS);
+        }
+    }
+
+    private Result load(HttpClient client, HttpRequest request, int seconds) throws Exception {
+        long deadline = System.nanoTime() + Duration.ofSeconds(seconds).toNanos();
+        LongAdder errors = new LongAdder();
+        List<Future<long[]>> clients = new ArrayList<>(CONCURRENCY);
+
+        try(ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor()){
+            for(int i = 0; i < CONCURRENCY; i++){
+                clients.add(executor.submit(() -> {
+                    long[] latencies = new long[1024];
+                    int count = 0;
+
+                    while(System.nanoTime() < deadline){
+                        long start = System.nanoTime();
+                        try {
+                            HttpResponse<Void> response = client.send(request, HttpResponse.BodyHandlers.discarding());
+                            if(response.statusCode() != 200) errors.increment();
+                        } catch (Exception e) {
+                            errors.increment();
+                        }
+
+                        if(count == latencies.length) latencies = Arrays.copyOf(latencies, count * 2);
+                        latencies[count++] = System.nanoTime() - start;
+                    }
+                    return Arrays.copyOf(latencies, count);
+                }));
+            }
+        }
+
+        long[] all = new long[0];
+        for(Future<long[]> future : clients){
+            long[] latencies = future.get();
+            int offset = all.length;
+            all = Arrays.copyOf(all, offset + latencies.length);
+            System.arraycopy(latencies, 0, all, offset, latencies.length);
+        }
+        Arrays.sort(all);
+
+        return new Result(
+                all.length / (double) seconds,
+                percentile(all, 0.50) / 1_000_000.0,
+                percentile(all, 0.99) / 1_000_000.0,
+                errors.sum());
+    }
+
+    private static long percentile(long[] sorted, double percentile){
+        if(sorted.length == 0) return 0;
+        return sorted[(int) Math.min(sorted.length - 1, Math.ceil(percentile * sorted.length) - 1)];
+    }
+
+    private record Result(double throughput, double p50Millis, double p99Millis, long errors) {}
+}
@@ -0,0 +1,196 @@
+package com.demo.identity_service.configuration;
+
+import com.demo.identity_service.dto.request.AuthenticationRequest;
+import com.demo.identity_service.dto.request.LogOutRequest;
+import com.demo.identity_service.dto.request.UserCreationRequest;
+import com.demo.identity_service.repository.InvalidatedTokenRepository;
+import com.demo.identity_service.service.AuthMetrics;
+import com.demo.identity_service.service.AuthenticationService;
+import com.demo.identity_service.service.InvalidatedTokenWriter;
+import com.demo.identity_service.service.RevokedTokenFilter;
+import com.demo.identity_service.service.TokenEpochStore;
+import com.demo.identity_service.service.TokenVerifier;
+import com.demo.identity_service.service.UserService;
+import com.demo.identity_service.service.VerifiedTokenCache;
+import com.nimbusds.jose.JWSAlgorithm;
+import com.nimbusds.jose.JWSHeader;
+import com.nimbusds.jose.JWSSigner;
+import com.nimbusds.jose.crypto.MACSigner;
+import com.nimbusds.jwt.JWTClaimsSet;
+import com.nimbusds.jwt.SignedJWT;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.security.oauth2.jwt.BadJwtException;
+import org.springframework.security.oauth2.jwt.Jwt;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.temporal.ChronoUnit;
+import java.util.Date;
+import java.util.List;
+import java.util.UUID;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+/**
+ * Token nằm trong VerifiedTokenCache của một instance bị từ chối khi được logout trên instance khác
+ * hoặc khi khóa đã ký token bị loại khỏi JwtKeyRing
+ * - Context Spring là instance xử lý logout, instance còn lại được dựng tay với filter, writer và cache riêng
+ *   dùng chung DB, JwtKeyRing và TokenEpochStore
+ */
+@SpringBootTest(properties = {
+        "jwt.valid-duration=3600",
+        "jwt.revocation.write-behind.flush-interval=600000"
+})
+class CustomJWTDecoderTest {
+    @Autowired
+    AuthenticationService authenticationService;
+
+    @Autowired
+    UserService userService;
+
+    @Autowired
+    InvalidatedTokenWriter invalidatedTokenWriter;
+
+    @Autowired
+    InvalidatedTokenRepository invalidatedTokenRepository;
+
+    @Autowired
+    JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    JwtKeyRing jwtKeyRing;
+
+    @Autowired
+    TokenEpochStore tokenEpochStore;
+
+    @Autowired
+    AuthMetrics authMetrics;
+
+    @Test
+    void cachedTokenIsRejectedAfterLogoutOnAnotherInstance() throws Exception {
+        userService.createUser(UserCreationRequest.builder()
+                .username("decodercache")
+                .password("password123")
+                .dob(LocalDate.of(1990, 1, 1))
+                .build());
+
+        Instance other = new Instance();
+        String token = authenticationService.authenticate(AuthenticationRequest.builder()
+                .username("decodercache")
+                .password("password123")
+                .build()).getToken();
+
+        other.decoder.decode(token);
+        assertThat(other.cache.get(token)).isNotNull();
+
+        // Logout trên instance của context: evict() không chạm tới cache của instance kia
+        authenticationService.logout(new LogOutRequest(token));
+        assertThat(invalidatedTokenWriter.flush()).isTrue();
+        other.filter.sync();
+
+        assertThat(other.cache.get(token)).isNotNull();
+        assertThatThrownBy(() -> other.decoder.decode(token)).isInstanceOf(BadJwtException.class);
+        assertThat(other.cache.get(token)).isNull();
+    }
+
+    @Test
+    void evictedTokenIsNotCachedAgain(){
+        userService.createUser(UserCreationRequest.builder()
+                .username("decoderevict")
+                .password("password123")
+                .dob(LocalDate.of(1990, 1, 1))
+                .build());
+
+        Instance instance = new Instance();
+        String token = authenticationService.authenticate(AuthenticationRequest.builder()
+                .username("decoderevict")
+                .password("password123")
+                .build()).getToken();
+        Jwt jwt = instance.decoder.decode(token);
+
+        // put() của một request đang verify chạy sau khi logout đã evict()
+        instance.cache.evict(jwt.getId(), Date.from(jwt.getExpiresAt()));
+        instance.cache.put(token, jwt);
+
+        assertThat(instance.cache.get(token)).isNull();
+    }
+
+    @Test
+    void cachedTokenIsRejectedAfterSigningKeyIsDropped(@TempDir Path dir) throws Exception {
+        String keyA = "a".repeat(64);
+        Path file = dir.resolve("signer-keys");
+        Files.writeString(file, keyA + "\n");
+        // rotation-window = 0: khóa bị thay khỏi vị trí hiện tại không còn được chấp nhận
+        JwtKeyRing ring = new JwtKeyRing(keyA, List.of(), 0, file.toString(), "HS512", "");
+        Instance instance = new Instance(ring);
+
+        String token = sign(ring.signer(), ring.header());
+        instance.decoder.decode(token);
+        assertThat(instance.cache.get(token)).isNotNull();
+
+        Files.writeString(file, "b".repeat(64) + "\n");
+        ring.reload();
+
+        assertThatThrownBy(() -> instance.decoder.decode(token)).isInstanceOf(BadJwtException.class);
+        assertThat(instance.cache.get(token)).isNull();
+    }
+
+    @Test
+    void tokenWithoutKidIsNotCached() throws Exception {
+        String key = "c".repeat(64);
+        Instance instance = new Instance(new JwtKeyRing(key, List.of(), 120, "", "HS512", ""));
+
+        String token = sign(new MACSigner(key.getBytes()), new JWSHeader(JWSAlgorithm.HS512));
+        instance.decoder.decode(token);
+
+        assertThat(instance.cache.get(token)).isNull();
+    }
+
+    private static String sign(JWSSigner signer, JWSHeader header) throws Exception {
+        SignedJWT jwt = new SignedJWT(header, new JWTClaimsSet.Builder()
+                .subject("decoderkey")
+                .jwtID(UUID.randomUUID().toString())
+                .issueTime(new Date())
+                .expirationTime(Date.from(Instant.now().plus(1, ChronoUnit.HOURS)))
+                .build());
+        jwt.sign(signer);
+        return jwt.serialize();
+    }
+
+    // Một instance khác của service: chỉ dùng chung DB, khóa ký và epoch
+    private class Instance {
+        RevokedTokenFilter filter = new RevokedTokenFilter(invalidatedTokenRepository, new SimpleMeterRegistry(),
+                1000, 0.01, 3600, 10000, 60000);
+        // Không start(): instance này không thu hồi token nào
+        InvalidatedTokenWriter writer = new InvalidatedTokenWriter(jdbcTemplate, filter, new SimpleMeterRegistry(),
+                500, 600000, 1000);
+        VerifiedTokenCache cache = new VerifiedTokenCache(1000);
+        CustomJWTDecoder decoder = new CustomJWTDecoder();
+
+        Instance(){
+            this(jwtKeyRing);
+        }
+
+        Instance(JwtKeyRing ring){
+            filter.rebuild();
+
+            TokenVerifier tokenVerifier = new TokenVerifier(ring, filter, writer, tokenEpochStore, authMetrics);
+            ReflectionTestUtils.setField(tokenVerifier, "REFRESHABLE_DURATION", 3600L);
+
+            ReflectionTestUtils.setField(decoder, "tokenVerifier", tokenVerifier);
+            ReflectionTestUtils.setField(decoder, "verifiedTokenCache", cache);
+            ReflectionTestUtils.setField(decoder, "jwtKeyRing", ring);
+            ReflectionTestUtils.setField(decoder, "tokenEpochStore", tokenEpochStore);
+            ReflectionTestUtils.setField(decoder, "authMetrics", authMetrics);
+        }
+    }
+}
@@ -0,0 +1,130 @@
+package com.demo.identity_service.configuration;
+
+import com.nimbusds.jose.JWSAlgorithm;
+import com.nimbusds.jose.JWSHeader;
+import com.nimbusds.jose.JWSVerifier;
+import com.nimbusds.jose.crypto.MACSigner;
+import com.nimbusds.jwt.JWTClaimsSet;
+import com.nimbusds.jwt.SignedJWT;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.Objects;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+/**
+ * Chọn khóa theo kid và đổi khóa qua jwt.signer-keys-file
+ */
+class JwtKeyRingTest {
+    private static final String KEY_A = "a".repeat(64);
+    private static final String KEY_B = "b".repeat(64);
+    private static final String KEY_C = "c".repeat(64);
+
+    @TempDir
+    Path dir;
+
+    @Test
+    void selectsKeyByKid() throws Exception {
+        JwtKeyRing ring = new JwtKeyRing(KEY_B, List.of(KEY_A), 120, "", "HS512", "");
+
+        String kidA = kid(ring, KEY_A);
+        assertThat(ring.header().getKeyID()).isNotEqualTo(kidA);
+
+        assertThat(verify(ring, sign(KEY_A, kidA))).isTrue();
+        assertThat(verify(ring, sign(KEY_B, ring.header().getKeyID()))).isTrue();
+        // Kid của khóa B nhưng ký bằng khóa C
+        assertThat(verify(ring, sign(KEY_C, ring.header().getKeyID()))).isFalse();
+        assertThat(verify(ring, sign(KEY_C, "unknown"))).isFalse();
+    }
+
+    @Test
+    void tokenWithoutKidIsTriedAgainstEveryActiveKey() throws Exception {
+        JwtKeyRing ring = new JwtKeyRing(KEY_B, List.of(KEY_A), 120, "", "HS512", "");
+
+        assertThat(verify(ring, sign(KEY_A, null))).isTrue();
+        assertThat(verify(ring, sign(KEY_B, null))).isTrue();
+        assertThat(verify(ring, sign(KEY_C, null))).isFalse();
+
+        // Khóa cũ đã hết rotation-window
+        JwtKeyRing expired = new JwtKeyRing(KEY_B, List.of(KEY_A), 0, "", "HS512", "");
+        assertThat(verify(expired, sign(KEY_A, null))).isFalse();
+        assertThat(verify(expired, sign(KEY_B, null))).isTrue();
+    }
+
+    @Test
+    void rotatesFromSharedKeyFile() throws Exception {
+        Path file = dir.resolve("signer-keys");
+        Files.writeString(file, "# current first\n" + KEY_A + "\n");
+        JwtKeyRing ring = new JwtKeyRing(KEY_C, List.of(), 120, file.toString(), "HS512", "");
+
+        String kidA = ring.header().getKeyID();
+        assertThat(kidA).isEqualTo(kid(ring, KEY_A));
+        String tokenA = sign(KEY_A, kidA);
+
+        // Khóa A bị thay bằng B và không còn trong file: vẫn verify được trong rotation-window
+        Files.writeString(file, KEY_B + "\n");
+        ring.reload();
+
+        assertThat(ring.header().getKeyID()).isNotEqualTo(kidA);
+        assertThat(verify(ring, tokenA)).isTrue();
+        assertThat(verify(ring, sign(KEY_B, ring.header().getKeyID()))).isTrue();
+
+        // File lỗi: giữ nguyên các khóa đang dùng
+        Files.writeString(file, "too short\n");
+        ring.reload();
+        assertThat(verify(ring, sign(KEY_B, ring.header().getKeyID()))).isTrue();
+    }
+
+    @Test
+    void unknownKidReloadsKeyFile() throws Exception {
+        Path file = dir.resolve("signer-keys");
+        Files.writeString(file, KEY_A + "\n");
+        JwtKeyRing ring = new JwtKeyRing(KEY_C, List.of(), 120, file.toString(), "HS512", "");
+
+        // Instance khác đã đọc file mới và ký bằng khóa B trước lần reload định kỳ của instance này
+        Files.writeString(file, KEY_B + "\n" + KEY_A + "\n");
+        JwtKeyRing other = new JwtKeyRing(KEY_C, List.of(), 120, file.toString(), "HS512", "");
+        String tokenB = sign(KEY_B, other.header().getKeyID());
+
+        assertThat(verify(ring, tokenB)).isTrue();
+        assertThat(ring.header().getKeyID()).isEqualTo(other.header().getKeyID());
+    }
+
+    @Test
+    void invalidConfiguredKeyFailsStartup() throws Exception {
+        assertThatThrownBy(() -> new JwtKeyRing(KEY_B, List.of("too short"), 120, "", "HS512", ""))
+                .isInstanceOf(IllegalArgumentException.class)
+                .hasMessageContaining("must be at least 512 bits");
+
+        Path file = dir.resolve("signer-keys");
+        Files.writeString(file, "too short\n");
+        assertThatThrownBy(() -> new JwtKeyRing(KEY_B, List.of(), 120, file.toString(), "HS512", ""))
+                .isInstanceOf(IllegalStateException.class)
+                .hasRootCauseInstanceOf(IllegalArgumentException.class);
+    }
+
+    private static String sign(String key, String kid) throws Exception {
+        JWSHeader.Builder header = new JWSHeader.Builder(JWSAlgorithm.HS512);
+        if(Objects.nonNull(kid)) header.keyID(kid);
+
+        SignedJWT jwt = new SignedJWT(header.build(), new JWTClaimsSet.Builder().subject("user").build());
+        jwt.sign(new MACSigner(key.getBytes()));
+        return jwt.serialize();
+    }
+
+    private static boolean verify(JwtKeyRing ring, String token) throws Exception {
+        SignedJWT jwt = SignedJWT.parse(token);
+        JWSVerifier verifier = ring.verifier(jwt.getHeader());
+        return Objects.nonNull(verifier) && jwt.verify(verifier);
+    }
+
+    // kid của một khóa, lấy từ ring chỉ có khóa đó
+    private static String kid(JwtKeyRing ring, String key){
+        return new JwtKeyRing(key, List.of(), 120, "", "HS512", "").header().getKeyID();
+    }
+}
@@ -0,0 +1,82 @@
+package com.demo.identity_service.controller;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.actuate.observability.AutoConfigureObservability;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.web.client.TestRestTemplate;
+import org.springframework.boot.test.web.server.LocalManagementPort;
+import org.springframework.http.HttpStatus;
+
+import java.util.Map;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Metrics của luồng xác thực được xuất ra /actuator/prometheus mà không cần token, chỉ qua cổng management
+ * - Kết quả introspect được đếm theo lý do từ chối
+ */
+@SpringBootTest(webEnvironment = SpringBootTest.WebEnvironment.RANDOM_PORT,
+        properties = "management.server.port=0")
+@AutoConfigureObservability
+class AuthenticationMetricsTest {
+    @Autowired
+    TestRestTemplate restTemplate;
+
+    @Autowired
+    ObjectMapper objectMapper;
+
+    @LocalManagementPort
+    int managementPort;
+
+    @Test
+    void exposesAuthMetricsInPrometheusFormat() throws Exception {
+        String response = restTemplate.postForObject("/auth/token",
+                Map.of("username", "admin", "password", "admin"), String.class);
+        String token = objectMapper.readTree(response).path("result").path("token").asText();
+
+        // Sửa một ký tự ở giữa chữ ký: token bị từ chối vì sai chữ ký
+        int index = token.lastIndexOf('.') + 10;
+        String tampered = token.substring(0, index)
+                + (token.charAt(index) == 'A' ? 'B' : 'A')
+                + token.substring(index + 1);
+
+        for(String introspected : new String[]{token, tampered}){
+            assertThat(restTemplate.postForEntity("/auth/introspect", Map.of("token", introspected), String.class)
+                    .getStatusCode()).isEqualTo(HttpStatus.OK);
+        }
+        // Không parse được: vẫn được đếm
+        restTemplate.postForEntity("/auth/introspect", Map.of("token", "not-a-jwt"), String.class);
+
+        // Endpoint ngoài /auth/* chỉ có count, không có histogram
+        restTemplate.getForEntity("/.well-known/jwks.json", String.class);
+
+        String metrics = restTemplate.getForObject(managementUrl("/actuator/prometheus"), String.class);
+
+        assertThat(metrics)
+                .contains("identity_auth_token_mint_seconds_bucket")
+                .contains("identity_auth_token_verify_seconds_bucket")
+                .contains("identity_auth_password_match_seconds_bucket")
+                .contains("identity_auth_scope_build_seconds_count")
+                .containsPattern("identity_auth_introspections_total\\{[^}]*reason=\"NONE\"[^}]*result=\"valid\"[^}]*} 1\\.0")
+                .containsPattern("identity_auth_introspections_total\\{[^}]*reason=\"BAD_SIGNATURE\"[^}]*result=\"invalid\"[^}]*} 1\\.0")
+                .containsPattern("identity_auth_introspections_total\\{[^}]*reason=\"MALFORMED\"[^}]*result=\"invalid\"[^}]*} 1\\.0")
+                .containsPattern("identity_auth_cache_lookups_total\\{[^}]*cache=\"role-scope\"")
+                .containsPattern("http_server_requests_seconds_bucket\\{[^}]*uri=\"/auth/token\"")
+                .containsPattern("http_server_requests_seconds_count\\{[^}]*uri=\"/.well-known/jwks.json\"")
+                .doesNotContainPattern("http_server_requests_seconds_bucket\\{[^}]*uri=\"/.well-known/jwks.json\"");
+    }
+
+    @Test
+    void prometheusIsNotPublicOnApiPort(){
+        assertThat(restTemplate.getForEntity(managementUrl("/actuator/health"), String.class).getStatusCode())
+                .isEqualTo(HttpStatus.OK);
+        assertThat(restTemplate.getForEntity("/actuator/prometheus", String.class).getStatusCode())
+                .isEqualTo(HttpStatus.UNAUTHORIZED);
+    }
+
+    private String managementUrl(String path){
+        return "http://localhost:" + managementPort + path;
+    }
+}
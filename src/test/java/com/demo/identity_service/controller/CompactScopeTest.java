@@ -0,0 +1,103 @@
+package com.demo.identity_service.controller;
+
+import com.demo.identity_service.dto.request.AuthenticationRequest;
+import com.demo.identity_service.dto.request.PermissionRequest;
+import com.demo.identity_service.dto.request.RefreshRequest;
+import com.demo.identity_service.dto.request.RoleRequest;
+import com.demo.identity_service.dto.request.UserCreationRequest;
+import com.demo.identity_service.dto.request.UserUpdateRequest;
+import com.demo.identity_service.service.AuthenticationService;
+import com.demo.identity_service.service.PermissionDictionary;
+import com.demo.identity_service.service.PermissionService;
+import com.demo.identity_service.service.RoleService;
+import com.demo.identity_service.service.UserService;
+import com.nimbusds.jwt.JWTClaimsSet;
+import com.nimbusds.jwt.SignedJWT;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.LocalDate;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+/**
+ * jwt.scope.compact=true: scope chỉ chứa role, permission nằm trong claim perm và vẫn được dùng để phân quyền
+ */
+@SpringBootTest(properties = {
+        "jwt.valid-duration=3600",
+        "jwt.scope.compact=true"
+})
+@AutoConfigureMockMvc
+class CompactScopeTest {
+    private static final int PERMISSIONS = 40;
+
+    @Autowired
+    MockMvc mockMvc;
+
+    @Autowired
+    AuthenticationService authenticationService;
+
+    @Autowired
+    UserService userService;
+
+    @Autowired
+    RoleService roleService;
+
+    @Autowired
+    PermissionService permissionService;
+
+    @Autowired
+    TransactionTemplate transactionTemplate;
+
+    @Test
+    void permissionsAreEncodedAsBitsetAndExpandedToAuthorities() throws Exception {
+        Set<String> permissions = new HashSet<>();
+        permissions.add("APPROVE_POST");
+        for(int i = 0; i < PERMISSIONS; i++) permissions.add("COMPACT_PERMISSION_" + i);
+        permissions.forEach(permission -> permissionService.create(new PermissionRequest(permission, null)));
+
+        transactionTemplate.executeWithoutResult(status ->
+                roleService.create(new RoleRequest("COMPACT_ADMIN", null, permissions)));
+
+        var user = userService.createUser(UserCreationRequest.builder()
+                .username("compactuser")
+                .password("password123")
+                .dob(LocalDate.of(1990, 1, 1))
+                .build());
+        transactionTemplate.executeWithoutResult(status -> userService.updateUser(user.getId().toString(),
+                UserUpdateRequest.builder()
+                        .password("password123")
+                        .roles(List.of("COMPACT_ADMIN"))
+                        .build()));
+
+        String token = authenticationService.authenticate(AuthenticationRequest.builder()
+                .username("compactuser")
+                .password("password123")
+                .build()).getToken();
+
+        JWTClaimsSet claims = SignedJWT.parse(token).getJWTClaimsSet();
+        assertThat(claims.getStringClaim("scope")).isEqualTo("ROLE_COMPACT_ADMIN");
+        // 8 ký tự version + "." + bitset, thay cho hơn 40 tên permission
+        assertThat(claims.getStringClaim(PermissionDictionary.CLAIM)).hasSizeLessThan(20);
+
+        // getAllUsers yêu cầu APPROVE_POST, chỉ có trong claim perm
+        mockMvc.perform(get("/users").param("size", "5").header("Authorization", "Bearer " + token))
+                .andExpect(status().isOk());
+
+        // Quyền không đổi: refresh dùng lại claim perm của token cũ
+        String refreshed = authenticationService.refreshToken(RefreshRequest.builder().token(token).build()).getToken();
+        assertThat(SignedJWT.parse(refreshed).getJWTClaimsSet().getStringClaim(PermissionDictionary.CLAIM))
+                .isEqualTo(claims.getStringClaim(PermissionDictionary.CLAIM));
+        mockMvc.perform(get("/users").param("size", "5").header("Authorization", "Bearer " + refreshed))
+                .andExpect(status().isOk());
+    }
+}
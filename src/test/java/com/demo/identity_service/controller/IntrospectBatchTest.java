@@ -0,0 +1,98 @@
+package com.demo.identity_service.controller;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.http.MediaType;
+import org.springframework.test.web.servlet.MockMvc;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.jsonPath;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+/**
+ * /auth/introspect/batch: kết quả đúng thứ tự token gửi lên, token lỗi không làm hỏng cả batch
+ */
+@SpringBootTest(properties = {
+        "jwt.valid-duration=3600",
+        "jwt.introspect.batch-max-size=6"
+})
+@AutoConfigureMockMvc
+class IntrospectBatchTest {
+    @Autowired
+    MockMvc mockMvc;
+
+    @Autowired
+    ObjectMapper objectMapper;
+
+    @Test
+    void resultsFollowRequestOrder() throws Exception {
+        mockMvc.perform(post("/users")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content("{\"username\":\"introspectbatch\",\"password\":\"password123\",\"dob\":\"1990-01-01\"}"))
+                .andExpect(status().isOk());
+
+        String first = login();
+        String loggedOut = login();
+        String last = login();
+
+        mockMvc.perform(post("/auth/logout")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content(objectMapper.writeValueAsString(Map.of("token", loggedOut))))
+                .andExpect(status().isOk());
+
+        int index = first.lastIndexOf('.') + 10;
+        String tampered = first.substring(0, index)
+                + (first.charAt(index) == 'A' ? 'B' : 'A')
+                + first.substring(index + 1);
+
+        String response = mockMvc.perform(post("/auth/introspect/batch")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content(objectMapper.writeValueAsString(Map.of("tokens",
+                                Arrays.asList(first, tampered, null, "not-a-jwt", loggedOut, last)))))
+                .andExpect(status().isOk())
+                .andReturn().getResponse().getContentAsString();
+
+        List<Boolean> valid = new ArrayList<>();
+        objectMapper.readTree(response).path("result").forEach(result -> valid.add(result.path("valid").asBoolean()));
+        assertThat(valid).containsExactly(true, false, false, false, false, true);
+    }
+
+    @Test
+    void rejectsBatchOverMaxSize() throws Exception {
+        List<String> tokens = new ArrayList<>(Collections.nCopies(7, "not-a-jwt"));
+
+        mockMvc.perform(post("/auth/introspect/batch")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content(objectMapper.writeValueAsString(Map.of("tokens", tokens))))
+                .andExpect(status().isBadRequest())
+                .andExpect(jsonPath("$.code").value(1010));
+    }
+
+    @Test
+    void emptyBatchReturnsEmptyResult() throws Exception {
+        mockMvc.perform(post("/auth/introspect/batch")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content("{\"tokens\":[]}"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.result.length()").value(0));
+    }
+
+    private String login() throws Exception {
+        String response = mockMvc.perform(post("/auth/token")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content(objectMapper.writeValueAsString(Map.of("username", "introspectbatch", "password", "password123"))))
+                .andExpect(status().isOk())
+                .andReturn().getResponse().getContentAsString();
+        return objectMapper.readTree(response).path("result").path("token").asText();
+    }
+}
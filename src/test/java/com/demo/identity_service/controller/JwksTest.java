@@ -0,0 +1,92 @@
+package com.demo.identity_service.controller;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.nimbusds.jose.JWSAlgorithm;
+import com.nimbusds.jose.JWSHeader;
+import com.nimbusds.jose.crypto.ECDSAVerifier;
+import com.nimbusds.jose.crypto.MACSigner;
+import com.nimbusds.jose.jwk.ECKey;
+import com.nimbusds.jose.jwk.JWKSet;
+import com.nimbusds.jwt.JWTClaimsSet;
+import com.nimbusds.jwt.SignedJWT;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.http.MediaType;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.MvcResult;
+
+import java.time.Instant;
+import java.util.Date;
+import java.util.Map;
+import java.util.UUID;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+/**
+ * Token ES256 verify được chỉ với public key từ /.well-known/jwks.json, token HS512 cũ vẫn được chấp nhận
+ */
+@SpringBootTest(properties = {
+        "jwt.valid-duration=3600",
+        "jwt.signing.algorithm=ES256"
+})
+@AutoConfigureMockMvc
+class JwksTest {
+    @Autowired
+    MockMvc mockMvc;
+
+    @Autowired
+    ObjectMapper objectMapper;
+
+    @Value("${jwt.signerKey}")
+    String signerKey;
+
+    @Test
+    void es256TokensVerifyWithPublishedKeys() throws Exception {
+        mockMvc.perform(post("/users")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content("{\"username\":\"jwksuser\",\"password\":\"password123\",\"dob\":\"1990-01-01\"}"))
+                .andExpect(status().isOk());
+
+        String response = mockMvc.perform(post("/auth/token")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content(objectMapper.writeValueAsString(Map.of("username", "jwksuser", "password", "password123"))))
+                .andExpect(status().isOk())
+                .andReturn().getResponse().getContentAsString();
+        SignedJWT token = SignedJWT.parse(objectMapper.readTree(response).path("result").path("token").asText());
+
+        assertThat(token.getHeader().getAlgorithm()).isEqualTo(JWSAlgorithm.ES256);
+
+        // Không cần token, client được phép cache
+        MvcResult jwks = mockMvc.perform(get("/.well-known/jwks.json"))
+                .andExpect(status().isOk())
+                .andReturn();
+        assertThat(jwks.getResponse().getHeader("Cache-Control")).contains("max-age=300", "public");
+
+        JWKSet jwkSet = JWKSet.parse(jwks.getResponse().getContentAsString());
+        ECKey publicKey = (ECKey) jwkSet.getKeyByKeyId(token.getHeader().getKeyID());
+        assertThat(publicKey.isPrivate()).isFalse();
+        assertThat(token.verify(new ECDSAVerifier(publicKey))).isTrue();
+
+        mockMvc.perform(get("/users/myInfo").header("Authorization", "Bearer " + token.serialize()))
+                .andExpect(status().isOk());
+
+        // Token HS512 ký trước khi chuyển sang ES256
+        SignedJWT legacy = new SignedJWT(new JWSHeader(JWSAlgorithm.HS512), new JWTClaimsSet.Builder()
+                .subject("jwksuser")
+                .issueTime(new Date())
+                .expirationTime(Date.from(Instant.now().plusSeconds(60)))
+                .jwtID(UUID.randomUUID().toString())
+                .claim("scope", "")
+                .build());
+        legacy.sign(new MACSigner(signerKey.getBytes()));
+
+        mockMvc.perform(get("/users/myInfo").header("Authorization", "Bearer " + legacy.serialize()))
+                .andExpect(status().isOk());
+    }
+}
@@ -0,0 +1,78 @@
+package com.demo.identity_service.controller;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.http.MediaType;
+import org.springframework.test.web.servlet.MockMvc;
+
+import java.util.Map;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.jsonPath;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+/**
+ * "Đăng xuất mọi nơi": mọi token đã cấp trước đó bị từ chối, kể cả token đang nằm trong VerifiedTokenCache
+ */
+@SpringBootTest(properties = "jwt.valid-duration=3600")
+@AutoConfigureMockMvc
+class LogoutAllTest {
+    @Autowired
+    MockMvc mockMvc;
+
+    @Autowired
+    ObjectMapper objectMapper;
+
+    @Test
+    void logoutAllRevokesEveryIssuedToken() throws Exception {
+        mockMvc.perform(post("/users")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content("{\"username\":\"logoutall\",\"password\":\"password123\",\"dob\":\"1990-01-01\"}"))
+                .andExpect(status().isOk());
+
+        String laptop = login();
+        String phone = login();
+
+        // Token của phone được xác thực một lần và nằm trong cache
+        mockMvc.perform(get("/users/myInfo").header("Authorization", "Bearer " + phone))
+                .andExpect(status().isOk());
+
+        mockMvc.perform(post("/auth/logout/all").header("Authorization", "Bearer " + laptop))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.result.epoch").value(1));
+
+        mockMvc.perform(get("/users/myInfo").header("Authorization", "Bearer " + phone))
+                .andExpect(status().isUnauthorized());
+        assertThat(introspect(laptop)).isFalse();
+        assertThat(introspect(phone)).isFalse();
+
+        // Token cấp sau khi đăng xuất mọi nơi vẫn dùng được
+        String fresh = login();
+        assertThat(introspect(fresh)).isTrue();
+        mockMvc.perform(get("/users/myInfo").header("Authorization", "Bearer " + fresh))
+                .andExpect(status().isOk());
+    }
+
+    private String login() throws Exception {
+        String response = mockMvc.perform(post("/auth/token")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content(objectMapper.writeValueAsString(Map.of("username", "logoutall", "password", "password123"))))
+                .andExpect(status().isOk())
+                .andReturn().getResponse().getContentAsString();
+        return objectMapper.readTree(response).path("result").path("token").asText();
+    }
+
+    private boolean introspect(String token) throws Exception {
+        String response = mockMvc.perform(post("/auth/introspect")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content(objectMapper.writeValueAsString(Map.of("token", token))))
+                .andExpect(status().isOk())
+                .andReturn().getResponse().getContentAsString();
+        return objectMapper.readTree(response).path("result").path("valid").asBoolean();
+    }
+}
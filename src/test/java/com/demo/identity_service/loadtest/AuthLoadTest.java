@@ -0,0 +1,338 @@
+package com.demo.identity_service.loadtest;
+
+import com.demo.identity_service.IdentityServiceApplication;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.boot.web.context.WebServerApplicationContext;
+import org.springframework.context.ConfigurableApplicationContext;
+
+import java.io.IOException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.EnumMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+/**
+ * Load test end-to-end: khởi động toàn bộ Spring context trên H2 (MySQL mode, xem src/test/resources/application.properties),
+ * nhiều client chạy trên virtual thread gọi đồng thời một tổ hợp các endpoint
+ * - Mỗi client đăng nhập bằng một user riêng và giữ token của mình, /auth/refresh thay token cũ bằng token mới
+ * - Báo cáo throughput, độ trễ p50/p90/p99/max và tỉ lệ lỗi theo từng endpoint, ghi ra loadtest.report (JSON)
+ *   để so sánh giữa các bản build
+ * - Chạy bằng: mvn test -Pload [-Dloadtest.concurrency=200] [-Dloadtest.duration=30] [-Dloadtest.warmup=5]
+ *   [-Dloadtest.users=50] [-Dloadtest.mix=token:10,refresh:5,introspect:35,myInfo:45,createUser:5]
+ *   [-Dloadtest.bcrypt-strength=4] [-Dloadtest.virtual-threads=true]
+ */
+@Tag("load")
+class AuthLoadTest {
+    private static final int CONCURRENCY = Integer.getInteger("loadtest.concurrency", 200);
+    private static final int DURATION_SECONDS = Integer.getInteger("loadtest.duration", 30);
+    private static final int WARMUP_SECONDS = Integer.getInteger("loadtest.warmup", 5);
+    private static final int USERS = Integer.getInteger("loadtest.users", 50);
+    private static final String MIX = System.getProperty("loadtest.mix", "token:10,refresh:5,introspect:35,myInfo:45,createUser:5");
+    private static final String BCRYPT_STRENGTH = System.getProperty("loadtest.bcrypt-strength", "4");
+    private static final String VIRTUAL_THREADS = System.getProperty("loadtest.virtual-threads", "false");
+    private static final Path REPORT = Path.of(System.getProperty("loadtest.report", "target/load-test-report.json"));
+
+    private static final String PASSWORD = "load-test-password";
+
+    private final ObjectMapper objectMapper = new ObjectMapper();
+    // Username của POST /users phải khác nhau giữa các lần gọi
+    private final AtomicLong userSequence = new AtomicLong();
+
+    @Test
+    void runMixedLoad() throws Exception {
+        Map<Endpoint, Integer> mix = parseMix(MIX);
+
+        // Truyền dạng tham số dòng lệnh để ghi đè application.yml
+        try(ConfigurableApplicationContext context = new SpringApplicationBuilder(IdentityServiceApplication.class)
+                .run("--server.port=0",
+                        "--spring.threads.virtual.enabled=" + VIRTUAL_THREADS,
+                        "--security.password.bcrypt.strength=" + BCRYPT_STRENGTH,
+                        // Token và refresh phải còn hạn trong suốt thời gian đo
+                        "--jwt.valid-duration=3600",
+                        "--jwt.refreshable-duration=7200",
+                        "--logging.level.root=WARN");
+            HttpClient client = HttpClient.newBuilder()
+                    .executor(Executors.newVirtualThreadPerTaskExecutor())
+                    .connectTimeout(Duration.ofSeconds(10))
+                    .build()){
+            int port = ((WebServerApplicationContext) context).getWebServer().getPort();
+            String baseUrl = "http://localhost:" + port + "/identity";
+
+            List<String> usernames = new ArrayList<>(USERS);
+            for(int i = 0; i < USERS; i++){
+                String username = nextUsername();
+                assertEquals(200, send(client, baseUrl, Endpoint.CREATE_USER, createUserBody(username), null).statusCode());
+                usernames.add(username);
+            }
+
+            load(client, baseUrl, usernames, mix, WARMUP_SECONDS);
+            Map<Endpoint, Stats> stats = load(client, baseUrl, usernames, mix, DURATION_SECONDS);
+
+            report(stats);
+        }
+    }
+
+    private Map<Endpoint, Stats> load(HttpClient client, String baseUrl, List<String> usernames,
+                                      Map<Endpoint, Integer> mix, int seconds) throws Exception {
+        long deadline = System.nanoTime() + Duration.ofSeconds(seconds).toNanos();
+        List<Future<Map<Endpoint, Stats>>> clients = new ArrayList<>(CONCURRENCY);
+
+        try(ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor()){
+            for(int i = 0; i < CONCURRENCY; i++){
+                String username = usernames.get(i % usernames.size());
+                clients.add(executor.submit(() -> new VirtualUser(client, baseUrl, username, mix).run(deadline)));
+            }
+        }
+
+        Map<Endpoint, Stats> merged = new EnumMap<>(Endpoint.class);
+        for(Future<Map<Endpoint, Stats>> future : clients){
+            future.get().forEach((endpoint, stats) -> merged.computeIfAbsent(endpoint, key -> new Stats()).merge(stats));
+        }
+        merged.values().forEach(stats -> stats.seconds = seconds);
+        return merged;
+    }
+
+    /**
+     * Một client: đăng nhập một lần rồi chọn ngẫu nhiên endpoint theo trọng số của mix cho đến hết thời gian
+     */
+    private final class VirtualUser {
+        private final HttpClient client;
+        private final String baseUrl;
+        private final String username;
+        private final Endpoint[] weighted;
+        private final Map<Endpoint, Stats> stats = new EnumMap<>(Endpoint.class);
+        private String token;
+
+        VirtualUser(HttpClient client, String baseUrl, String username, Map<Endpoint, Integer> mix) {
+            this.client = client;
+            this.baseUrl = baseUrl;
+            this.username = username;
+            this.weighted = mix.entrySet().stream()
+                    .flatMap(entry -> Collections.nCopies(entry.getValue(), entry.getKey()).stream())
+                    .toArray(Endpoint[]::new);
+        }
+
+        Map<Endpoint, Stats> run(long deadline){
+            while(System.nanoTime() < deadline){
+                // Chưa có token (lần đầu hoặc lần đăng nhập trước lỗi): đăng nhập trước
+                Endpoint endpoint = token == null
+                        ? Endpoint.TOKEN
+                        : weighted[ThreadLocalRandom.current().nextInt(weighted.length)];
+
+                call(endpoint);
+            }
+            return stats;
+        }
+
+        private void call(Endpoint endpoint){
+            String body = switch (endpoint) {
+                case TOKEN -> "{\"username\":\"" + username + "\",\"password\":\"" + PASSWORD + "\"}";
+                case REFRESH, INTROSPECT -> "{\"token\":\"" + token + "\"}";
+                case MY_INFO -> null;
+                case CREATE_USER -> createUserBody(nextUsername());
+            };
+
+            long start = System.nanoTime();
+            int status;
+            String responseBody = null;
+            try {
+                HttpResponse<String> response = send(client, baseUrl, endpoint, body, token);
+                status = response.statusCode();
+                responseBody = response.body();
+            } catch (Exception e) {
+                // Lỗi kết nối/timeout được ghi nhận với status 0
+                status = 0;
+            }
+            stats.computeIfAbsent(endpoint, key -> new Stats()).record(System.nanoTime() - start, status);
+
+            if(endpoint == Endpoint.TOKEN || endpoint == Endpoint.REFRESH){
+                // Refresh đã thu hồi token cũ: lỗi thì đăng nhập lại ở lượt sau
+                token = status == 200 ? readToken(responseBody) : null;
+            }
+        }
+    }
+
+    private HttpResponse<String> send(HttpClient client, String baseUrl, Endpoint endpoint,
+                                      String body, String token) throws IOException, InterruptedException {
+        HttpRequest.Builder builder = HttpRequest.newBuilder(URI.create(baseUrl + endpoint.path))
+                .timeout(Duration.ofSeconds(30));
+
+        if(body == null){
+            builder.GET();
+        } else {
+            builder.header("Content-Type", "application/json")
+                    .POST(HttpRequest.BodyPublishers.ofString(body));
+        }
+
+        if(endpoint == Endpoint.MY_INFO){
+            builder.header("Authorization", "Bearer " + token);
+        }
+
+        return client.send(builder.build(), HttpResponse.BodyHandlers.ofString());
+    }
+
+    private String readToken(String body){
+        try {
+            JsonNode token = objectMapper.readTree(body).path("result").path("token");
+            return token.isTextual() ? token.asText() : null;
+        } catch (IOException e) {
+            return null;
+        }
+    }
+
+    private String nextUsername(){
+        return "load" + System.nanoTime() % 100_000 + "_" + userSequence.incrementAndGet();
+    }
+
+    private static String createUserBody(String username){
+        return "{\"username\":\"" + username + "\",\"password\":\"" + PASSWORD + "\","
+                + "\"firstName\":\"Load\",\"lastName\":\"Test\",\"dob\":\"1990-01-01\"}";
+    }
+
+    private void report(Map<Endpoint, Stats> stats) throws IOException {
+        Map<String, Object> endpoints = new LinkedHashMap<>();
+
+        System.out.printf("concurrency = %d, duration = %d s, mix = %s%n", CONCURRENCY, DURATION_SECONDS, MIX);
+        System.out.printf("%-24s %10s %10s %10s %10s %10s %10s %8s  %s%n",
+                "endpoint", "requests", "req/s", "p50 ms", "p90 ms", "p99 ms", "max ms", "errors", "status");
+
+        for(Endpoint endpoint : Endpoint.values()){
+            Stats endpointStats = stats.get(endpoint);
+            if(endpointStats == null) continue;
+
+            Map<String, Object> summary = endpointStats.summary();
+            endpoints.put(endpoint.method + " " + endpoint.path, summary);
+
+            System.out.printf("%-24s %10d %10.1f %10.2f %10.2f %10.2f %10.2f %7.2f%%  %s%n",
+                    endpoint.method + " " + endpoint.path,
+                    summary.get("requests"), summary.get("throughput"),
+                    summary.get("p50Millis"), summary.get("p90Millis"), summary.get("p99Millis"), summary.get("maxMillis"),
+                    (double) summary.get("errorRate") * 100, summary.get("statuses"));
+        }
+
+        Map<String, Object> report = new LinkedHashMap<>();
+        report.put("timestamp", Instant.now().toString());
+        report.put("concurrency", CONCURRENCY);
+        report.put("durationSeconds", DURATION_SECONDS);
+        report.put("mix", MIX);
+        report.put("virtualThreads", Boolean.parseBoolean(VIRTUAL_THREADS));
+        report.put("bcryptStrength", Integer.parseInt(BCRYPT_STRENGTH));
+        report.put("endpoints", endpoints);
+
+        if(REPORT.getParent() != null) Files.createDirectories(REPORT.getParent());
+        objectMapper.writerWithDefaultPrettyPrinter().writeValue(REPORT.toFile(), report);
+        System.out.println("report: " + REPORT.toAbsolutePath());
+    }
+
+    private static Map<Endpoint, Integer> parseMix(String mix){
+        Map<Endpoint, Integer> weights = new EnumMap<>(Endpoint.class);
+
+        for(String entry : mix.split(",")){
+            String[] parts = entry.trim().split(":");
+            int weight = Integer.parseInt(parts[1].trim());
+            if(weight > 0) weights.put(Endpoint.of(parts[0].trim()), weight);
+        }
+
+        if(weights.isEmpty()) throw new IllegalArgumentException("loadtest.mix has no endpoint: " + mix);
+        return weights;
+    }
+
+    private enum Endpoint {
+        TOKEN("token", "POST", "/auth/token"),
+        REFRESH("refresh", "POST", "/auth/refresh"),
+        INTROSPECT("introspect", "POST", "/auth/introspect"),
+        MY_INFO("myInfo", "GET", "/users/myInfo"),
+        CREATE_USER("createUser", "POST", "/users");
+
+        private final String key;
+        private final String method;
+        private final String path;
+
+        Endpoint(String key, String method, String path) {
+            this.key = key;
+            this.method = method;
+            this.path = path;
+        }
+
+        static Endpoint of(String key){
+            return Arrays.stream(values())
+                    .filter(endpoint -> endpoint.key.equalsIgnoreCase(key))
+                    .findFirst()
+                    .orElseThrow(() -> new IllegalArgumentException("Unknown endpoint in loadtest.mix: " + key));
+        }
+    }
+
+    /**
+     * Độ trễ (nano giây) và status code của một endpoint, mỗi client giữ một bản riêng rồi gộp lại khi kết thúc
+     */
+    private static final class Stats {
+        private long[] latencies = new long[1024];
+        private int count;
+        private final Map<Integer, Long> statuses = new TreeMap<>();
+        private int seconds;
+
+        void record(long latency, int status){
+            if(count == latencies.length) latencies = Arrays.copyOf(latencies, count * 2);
+            latencies[count++] = latency;
+            statuses.merge(status, 1L, Long::sum);
+        }
+
+        void merge(Stats other){
+            if(count + other.count > latencies.length){
+                latencies = Arrays.copyOf(latencies, Math.max(latencies.length * 2, count + other.count));
+            }
+            System.arraycopy(other.latencies, 0, latencies, count, other.count);
+            count += other.count;
+            other.statuses.forEach((status, total) -> statuses.merge(status, total, Long::sum));
+        }
+
+        Map<String, Object> summary(){
+            long[] sorted = Arrays.copyOf(latencies, count);
+            Arrays.sort(sorted);
+
+            long errors = statuses.entrySet().stream()
+                    .filter(entry -> entry.getKey() < 200 || entry.getKey() >= 300)
+                    .mapToLong(Map.Entry::getValue)
+                    .sum();
+
+            Map<String, Object> summary = new LinkedHashMap<>();
+            summary.put("requests", count);
+            summary.put("throughput", count / (double) seconds);
+            summary.put("p50Millis", percentile(sorted, 0.50) / 1_000_000.0);
+            summary.put("p90Millis", percentile(sorted, 0.90) / 1_000_000.0);
+            summary.put("p99Millis", percentile(sorted, 0.99) / 1_000_000.0);
+            summary.put("maxMillis", (count == 0 ? 0 : sorted[count - 1]) / 1_000_000.0);
+            summary.put("errorRate", count == 0 ? 0.0 : errors / (double) count);
+            summary.put("statuses", statuses);
+            return summary;
+        }
+
+        private static long percentile(long[] sorted, double percentile){
+            if(sorted.length == 0) return 0;
+            return sorted[(int) Math.min(sorted.length - 1, Math.ceil(percentile * sorted.length) - 1)];
+        }
+    }
+}
@@ -0,0 +1,99 @@
+package com.demo.identity_service.repository;
+
+import com.demo.identity_service.entity.Permission;
+import com.demo.identity_service.entity.Role;
+import jakarta.persistence.EntityManagerFactory;
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.Statistics;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabase;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Second-level cache chỉ được ghi khi transaction commit, nên test không chạy trong transaction của @DataJpaTest
+ */
+@DataJpaTest
+@AutoConfigureTestDatabase(replace = AutoConfigureTestDatabase.Replace.NONE)
+@Transactional(propagation = Propagation.NOT_SUPPORTED)
+class RoleRepositoryTest {
+
+    @Autowired
+    private RoleRepository roleRepository;
+
+    @Autowired
+    private PermissionRepository permissionRepository;
+
+    @Autowired
+    private EntityManagerFactory entityManagerFactory;
+
+    @Autowired
+    private TransactionTemplate transactionTemplate;
+
+    private Statistics statistics;
+
+    @BeforeEach
+    void setUp(){
+        SessionFactory sessionFactory = entityManagerFactory.unwrap(SessionFactory.class);
+        sessionFactory.getCache().evictAllRegions();
+        statistics = sessionFactory.getStatistics();
+        statistics.setStatisticsEnabled(true);
+
+        Permission permission = permissionRepository.save(Permission.builder().name("READ_DATA").build());
+        roleRepository.save(Role.builder().name("VIEWER").permissions(new HashSet<>(Set.of(permission))).build());
+        statistics.clear();
+    }
+
+    @AfterEach
+    void tearDown(){
+        roleRepository.deleteAll();
+        permissionRepository.deleteAll();
+    }
+
+    /** Lần đọc thứ hai lấy role và permission từ second-level cache, không truy vấn DB */
+    @Test
+    void findAll_isServedFromSecondLevelCache(){
+        readPermissions();
+        long statements = statistics.getPrepareStatementCount();
+
+        readPermissions();
+
+        assertEquals(statements, statistics.getPrepareStatementCount());
+        assertTrue(statistics.getQueryCacheHitCount() > 0);
+        assertTrue(statistics.getSecondLevelCacheHitCount() > 0);
+    }
+
+    /** Sửa role qua JPA làm mất hiệu lực kết quả đã cache */
+    @Test
+    void findAll_seesUpdatesAfterWrite(){
+        readPermissions();
+
+        Role role = roleRepository.findById("VIEWER").orElseThrow();
+        role.setPermissions(new HashSet<>());
+        roleRepository.save(role);
+
+        int permissions = transactionTemplate.execute(status ->
+                roleRepository.findAll().getFirst().getPermissions().size());
+        assertEquals(0, permissions);
+    }
+
+    // Mỗi lần đọc là một session riêng, giống các request của RoleService/UserService
+    private void readPermissions(){
+        transactionTemplate.executeWithoutResult(status -> {
+            roleRepository.findAll().forEach(role -> role.getPermissions().size());
+            roleRepository.findAllById(List.of("VIEWER"));
+        });
+    }
+}
@@ -0,0 +1,147 @@
+package com.demo.identity_service.repository;
+
+import com.demo.identity_service.dto.projection.UserAuthorities;
+import com.demo.identity_service.dto.response.UserResponse;
+import com.demo.identity_service.entity.Permission;
+import com.demo.identity_service.entity.Role;
+import com.demo.identity_service.entity.User;
+import org.hibernate.SessionFactory;
+import org.hibernate.exception.ConstraintViolationException;
+import org.hibernate.stat.Statistics;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.ValueSource;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabase;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.boot.test.autoconfigure.orm.jpa.TestEntityManager;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.data.domain.PageRequest;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertInstanceOf;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+@DataJpaTest(properties = "spring.jpa.properties.hibernate.generate_statistics=true")
+@AutoConfigureTestDatabase(replace = AutoConfigureTestDatabase.Replace.NONE)
+class UserRepositoryTest {
+    private static final int PERMISSIONS_PER_ROLE = 5;
+
+    @Autowired
+    private UserRepository userRepository;
+
+    @Autowired
+    private TestEntityManager entityManager;
+
+    private Statistics statistics;
+
+    @BeforeEach
+    void setUp(){
+        statistics = entityManager.getEntityManager()
+                .getEntityManagerFactory()
+                .unwrap(SessionFactory.class)
+                .getStatistics();
+    }
+
+    /** Số câu SQL khi đăng nhập không tăng theo số role/permission của user */
+    @ParameterizedTest
+    @ValueSource(ints = {0, 1, 5, 20})
+    void findAuthoritiesByUsername_usesSingleQuery(int roleCount){
+        createUser("user" + roleCount, roleCount);
+        entityManager.flush();
+        entityManager.clear();
+        statistics.clear();
+
+        var user = UserAuthorities.from(userRepository.findAuthoritiesByUsername("user" + roleCount));
+
+        assertEquals(1, statistics.getPrepareStatementCount());
+        assertTrue(user.isPresent());
+        assertEquals("user" + roleCount, user.get().username());
+        // Chỉ load tên role, không nhân số dòng theo số permission
+        assertEquals(roleCount, user.get().roleNames().size());
+    }
+
+    @Test
+    void findAuthoritiesByUsername_returnsEmptyForUnknownUser(){
+        assertTrue(UserAuthorities.from(userRepository.findAuthoritiesByUsername("missing")).isEmpty());
+    }
+
+    /** Duyệt hết các trang bằng cursor: không trùng, không sót, đúng thứ tự id */
+    @Test
+    void findPageAfter_walksAllUsersInIdOrder(){
+        for(int i = 0; i < 7; i++) createUser("page" + i, 0);
+        entityManager.flush();
+        entityManager.clear();
+
+        List<String> ids = new ArrayList<>();
+        List<UserResponse> page = userRepository.findPage(PageRequest.of(0, 3));
+        while(!page.isEmpty()){
+            page.forEach(user -> ids.add(user.getId()));
+            page = userRepository.findPageAfter(UUID.fromString(page.getLast().getId()), PageRequest.of(0, 3));
+        }
+
+        assertEquals(7, ids.size());
+        assertEquals(ids.stream().sorted().toList(), ids);
+    }
+
+    /** Export: mỗi cặp (user, role) một dòng, user không có role vẫn có một dòng, các dòng liền nhau theo id */
+    @Test
+    void streamAllForExport_returnsRowsGroupedById(){
+        createUser("export0", 0);
+        createUser("export2", 2);
+        entityManager.flush();
+        entityManager.clear();
+
+        List<String> ids;
+        try(var rows = userRepository.streamAllForExport()){
+            ids = rows.map(row -> row.getId().toString()).toList();
+        }
+
+        assertEquals(3, ids.size());
+        assertEquals(ids.stream().sorted().toList(), ids);
+    }
+
+    /** Unique index chặn trùng username ngay khi insert */
+    @Test
+    void saveAndFlush_rejectsDuplicateUsername(){
+        userRepository.saveAndFlush(User.builder().username("duplicated").password("password").build());
+
+        var exception = assertThrows(DataIntegrityViolationException.class, () ->
+                userRepository.saveAndFlush(User.builder().username("duplicated").password("password").build()));
+
+        var cause = assertInstanceOf(ConstraintViolationException.class, exception.getCause());
+        assertTrue(cause.getConstraintName().toLowerCase().contains(User.USERNAME_CONSTRAINT));
+    }
+
+    private void createUser(String username, int roleCount){
+        Set<Role> roles = new HashSet<>();
+
+        for(int i = 0; i < roleCount; i++){
+            Set<Permission> permissions = new HashSet<>();
+            for(int j = 0; j < PERMISSIONS_PER_ROLE; j++){
+                permissions.add(entityManager.persist(Permission.builder()
+                        .name(username + "_ROLE" + i + "_PERM" + j)
+                        .build()));
+            }
+
+            roles.add(entityManager.persist(Role.builder()
+                    .name(username + "_ROLE" + i)
+                    .permissions(permissions)
+                    .build()));
+        }
+
+        entityManager.persist(User.builder()
+                .username(username)
+                .password("password")
+                .roles(roles)
+                .build());
+    }
+}
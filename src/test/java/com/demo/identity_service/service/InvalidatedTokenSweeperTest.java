@@ -0,0 +1,65 @@
+package com.demo.identity_service.service;
+
+import com.demo.identity_service.entity.InvalidatedToken;
+import com.demo.identity_service.repository.InvalidatedTokenRepository;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.time.Instant;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+import java.util.UUID;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Sweeper mode batch chỉ xóa các token hết hạn trước cutoff, qua nhiều batch
+ */
+@SpringBootTest
+class InvalidatedTokenSweeperTest {
+    @Autowired
+    InvalidatedTokenRepository invalidatedTokenRepository;
+
+    @Autowired
+    JdbcTemplate jdbcTemplate;
+
+    @Test
+    void deletesOnlyTokensExpiredBeforeCutoff(){
+        Instant cutoff = Instant.now().minus(1, ChronoUnit.DAYS);
+
+        List<String> expired = new ArrayList<>();
+        for(int i = 0; i < 5; i++){
+            expired.add(save(cutoff.minus(i + 1, ChronoUnit.HOURS)));
+        }
+        String notYetExpired = save(cutoff.plus(1, ChronoUnit.HOURS));
+        String active = save(Instant.now().plus(1, ChronoUnit.HOURS));
+
+        // batch-size 2: 3 batch, batch cuối không đủ
+        InvalidatedTokenSweeper sweeper = new InvalidatedTokenSweeper(invalidatedTokenRepository, jdbcTemplate,
+                new SimpleMeterRegistry(), "batch", 2, 0, 3, 120);
+
+        assertThat(sweeper.deleteInBatches(Date.from(cutoff))).isEqualTo(5);
+
+        assertThat(invalidatedTokenRepository.findAllById(expired)).isEmpty();
+        assertThat(invalidatedTokenRepository.existsById(notYetExpired)).isTrue();
+        assertThat(invalidatedTokenRepository.existsById(active)).isTrue();
+
+        // Không còn gì để xóa
+        assertThat(sweeper.deleteInBatches(Date.from(cutoff))).isZero();
+    }
+
+    private String save(Instant expirationTime){
+        String jwtId = UUID.randomUUID().toString();
+        invalidatedTokenRepository.save(InvalidatedToken.builder()
+                .id(jwtId)
+                .expirationTime(Date.from(expirationTime))
+                .revokedAt(new Date())
+                .build());
+        return jwtId;
+    }
+}
@@ -0,0 +1,96 @@
+package com.demo.identity_service.service;
+
+import com.demo.identity_service.dto.request.AuthenticationRequest;
+import com.demo.identity_service.dto.request.IntrospectBatchRequest;
+import com.demo.identity_service.dto.request.IntrospectRequest;
+import com.demo.identity_service.dto.request.LogOutRequest;
+import com.demo.identity_service.dto.request.UserCreationRequest;
+import com.demo.identity_service.dto.response.IntrospectResponse;
+import com.demo.identity_service.repository.InvalidatedTokenRepository;
+import com.nimbusds.jwt.SignedJWT;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+
+import java.time.LocalDate;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Token bị từ chối ngay sau logout, trước khi được ghi xuống DB, và vẫn bị từ chối sau khi flush
+ * - flush-interval dài để thread ghi nền không chạy trong lúc test
+ */
+@SpringBootTest(properties = {
+        "jwt.valid-duration=3600",
+        "jwt.revocation.write-behind.flush-interval=600000"
+})
+class InvalidatedTokenWriterTest {
+    @Autowired
+    AuthenticationService authenticationService;
+
+    @Autowired
+    UserService userService;
+
+    @Autowired
+    InvalidatedTokenWriter invalidatedTokenWriter;
+
+    @Autowired
+    InvalidatedTokenRepository invalidatedTokenRepository;
+
+    @Test
+    void logoutIsEffectiveBeforeFlushAndPersistedAfter() throws Exception {
+        userService.createUser(UserCreationRequest.builder()
+                .username("writebehind")
+                .password("password123")
+                .dob(LocalDate.of(1990, 1, 1))
+                .build());
+
+        String first = login();
+        String second = login();
+        String firstId = jwtId(first);
+        String secondId = jwtId(second);
+
+        authenticationService.logout(new LogOutRequest(first));
+        authenticationService.logout(new LogOutRequest(second));
+
+        // Chưa có dòng nào trong DB nhưng token đã bị từ chối
+        assertThat(invalidatedTokenWriter.isPending(firstId)).isTrue();
+        assertThat(invalidatedTokenRepository.existsById(firstId)).isFalse();
+        assertThat(introspect(first)).isFalse();
+        assertThat(authenticationService.introspectBatch(new IntrospectBatchRequest(List.of(first, second))))
+                .extracting(IntrospectResponse::isValid)
+                .containsExactly(false, false);
+
+        assertThat(invalidatedTokenWriter.flush()).isTrue();
+
+        assertThat(invalidatedTokenWriter.isPending(firstId)).isFalse();
+        assertThat(invalidatedTokenRepository.existsById(firstId)).isTrue();
+        assertThat(invalidatedTokenRepository.existsById(secondId)).isTrue();
+        assertThat(introspect(first)).isFalse();
+
+        // Token đã có trong DB bị thu hồi lần nữa: batch lỗi trùng khóa, các dòng còn lại vẫn được ghi
+        String third = login();
+        invalidatedTokenWriter.revoke(firstId, SignedJWT.parse(first).getJWTClaimsSet().getExpirationTime());
+        authenticationService.logout(new LogOutRequest(third));
+
+        assertThat(invalidatedTokenWriter.flush()).isTrue();
+        assertThat(invalidatedTokenRepository.existsById(jwtId(third))).isTrue();
+        assertThat(invalidatedTokenWriter.isPending(firstId)).isFalse();
+    }
+
+    private String login(){
+        return authenticationService.authenticate(AuthenticationRequest.builder()
+                .username("writebehind")
+                .password("password123")
+                .build()).getToken();
+    }
+
+    private boolean introspect(String token) throws Exception {
+        return authenticationService.introspect(new IntrospectRequest(token)).isValid();
+    }
+
+    private static String jwtId(String token) throws Exception {
+        return SignedJWT.parse(token).getJWTClaimsSet().getJWTID();
+    }
+}
@@ -0,0 +1,123 @@
+package com.demo.identity_service.service;
+
+import com.demo.identity_service.exception.AppException;
+import com.demo.identity_service.exception.ErrorCode;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.security.crypto.bcrypt.BCryptPasswordEncoder;
+import org.springframework.security.crypto.password.PasswordEncoder;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+/**
+ * Pool bcrypt có giới hạn: hàng đợi đầy hoặc chờ quá timeout thì trả về TOO_MANY_REQUESTS ngay
+ * - pool 1 thread, hàng đợi 1 chỗ; mật khẩu "block" giữ thread của pool đến khi test cho phép chạy tiếp
+ */
+class PasswordHasherTest {
+    private static final String BLOCKING_PASSWORD = "block";
+
+    CountDownLatch started = new CountDownLatch(1);
+    CountDownLatch release = new CountDownLatch(1);
+    SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+    List<Thread> callers = new ArrayList<>();
+
+    @AfterEach
+    void tearDown() throws InterruptedException {
+        release.countDown();
+        for(Thread caller : callers) caller.join(5000);
+    }
+
+    @Test
+    void rejectsWhenQueueIsFull() throws Exception {
+        PasswordHasher passwordHasher = hasher(5000);
+
+        // Thread duy nhất của pool bận, request thứ hai nằm trong hàng đợi
+        call(() -> passwordHasher.encode(BLOCKING_PASSWORD));
+        assertThat(started.await(5, TimeUnit.SECONDS)).isTrue();
+        call(() -> passwordHasher.encode("queued"));
+        awaitQueued(1);
+
+        long start = System.nanoTime();
+        assertThatThrownBy(() -> passwordHasher.matches("password", "$2a$04$invalid"))
+                .isInstanceOf(AppException.class)
+                .extracting(e -> ((AppException) e).getErrorCode())
+                .isEqualTo(ErrorCode.TOO_MANY_REQUESTS);
+        // Bị từ chối ngay, không chờ tới timeout
+        assertThat(TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start)).isLessThan(1000);
+
+        // Import hàng loạt không bị từ chối: mã hóa trên thread gọi khi hàng đợi đầy
+        List<String> encoded = passwordHasher.encodeAll(List.of("import1", "import2"));
+        assertThat(encoded).hasSize(2);
+        assertThat(new BCryptPasswordEncoder().matches("import2", encoded.get(1))).isTrue();
+    }
+
+    @Test
+    void rejectsWhenWaitingLongerThanTimeout() throws Exception {
+        PasswordHasher passwordHasher = hasher(100);
+
+        call(() -> passwordHasher.encode(BLOCKING_PASSWORD));
+        assertThat(started.await(5, TimeUnit.SECONDS)).isTrue();
+
+        assertThatThrownBy(() -> passwordHasher.encode("waiting"))
+                .isInstanceOf(AppException.class)
+                .extracting(e -> ((AppException) e).getErrorCode())
+                .isEqualTo(ErrorCode.TOO_MANY_REQUESTS);
+    }
+
+    private PasswordHasher hasher(long timeoutMillis){
+        return new PasswordHasher(new BlockingPasswordEncoder(), meterRegistry, 1, 1, timeoutMillis);
+    }
+
+    // Chạy request trên thread riêng, kết quả (kể cả 429) không quan trọng
+    private void call(Runnable request){
+        Thread caller = new Thread(() -> {
+            try {
+                request.run();
+            } catch (AppException e) {
+                // Request đã bị từ chối hoặc hết thời gian chờ
+            }
+        });
+        caller.start();
+        callers.add(caller);
+    }
+
+    private void awaitQueued(int expected) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + 5000;
+        while(meterRegistry.get("executor.queued").tag("name", "password-hasher").gauge().value() < expected
+                && System.currentTimeMillis() < deadline){
+            Thread.sleep(5);
+        }
+        assertThat(meterRegistry.get("executor.queued").tag("name", "password-hasher").gauge().value())
+                .isEqualTo(expected);
+    }
+
+    // bcrypt cost 4, riêng mật khẩu "block" chờ tới khi test release
+    private class BlockingPasswordEncoder implements PasswordEncoder {
+        private final PasswordEncoder delegate = new BCryptPasswordEncoder(4);
+
+        @Override
+        public String encode(CharSequence rawPassword){
+            if(BLOCKING_PASSWORD.contentEquals(rawPassword)){
+                started.countDown();
+                try {
+                    release.await();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            }
+            return delegate.encode(rawPassword);
+        }
+
+        @Override
+        public boolean matches(CharSequence rawPassword, String encodedPassword){
+            return delegate.matches(rawPassword, encodedPassword);
+        }
+    }
+}
@@ -0,0 +1,95 @@
+package com.demo.identity_service.service;
+
+import com.demo.identity_service.configuration.BCryptCostCalibrator;
+import com.demo.identity_service.dto.request.AuthenticationRequest;
+import com.demo.identity_service.dto.request.UserCreationRequest;
+import com.demo.identity_service.repository.UserRepository;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.security.crypto.bcrypt.BCryptPasswordEncoder;
+
+import java.time.LocalDate;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Mật khẩu chỉ được mã hóa lại khi cost đã lưu thấp hơn cost hiện tại (5)
+ */
+@SpringBootTest(properties = "security.password.bcrypt.strength=5")
+class PasswordRehashTest {
+    @Autowired
+    AuthenticationService authenticationService;
+
+    @Autowired
+    UserService userService;
+
+    @Autowired
+    PasswordHasher passwordHasher;
+
+    @Autowired
+    UserRepository userRepository;
+
+    @Autowired
+    JdbcTemplate jdbcTemplate;
+
+    @Test
+    void weakerHashIsUpgradedOnLogin() throws Exception {
+        createUser("rehashlow");
+        storePassword("rehashlow", 4);
+
+        login("rehashlow");
+
+        // Rehash chạy nền trên pool của PasswordHasher
+        long deadline = System.currentTimeMillis() + 5000;
+        while(strengthOf("rehashlow") != 5 && System.currentTimeMillis() < deadline){
+            Thread.sleep(20);
+        }
+        assertThat(strengthOf("rehashlow")).isEqualTo(5);
+
+        login("rehashlow");
+    }
+
+    @Test
+    void strongerHashIsKept(){
+        createUser("rehashhigh");
+        String stored = storePassword("rehashhigh", 6);
+
+        login("rehashhigh");
+
+        AtomicBoolean rehashed = new AtomicBoolean();
+        passwordHasher.rehashIfNeeded("password123", stored, newPassword -> rehashed.set(true));
+
+        assertThat(rehashed).isFalse();
+        assertThat(strengthOf("rehashhigh")).isEqualTo(6);
+    }
+
+    private void createUser(String username){
+        userService.createUser(UserCreationRequest.builder()
+                .username(username)
+                .password("password123")
+                .dob(LocalDate.of(1990, 1, 1))
+                .build());
+    }
+
+    // Mật khẩu được tạo khi cost còn khác cost hiện tại
+    private String storePassword(String username, int strength){
+        String stored = "{bcrypt}" + new BCryptPasswordEncoder(strength).encode("password123");
+        jdbcTemplate.update("update user set password = ? where username = ?", stored, username);
+        return stored;
+    }
+
+    private void login(String username){
+        assertThat(authenticationService.authenticate(AuthenticationRequest.builder()
+                .username(username)
+                .password("password123")
+                .build()).isAuthenticated()).isTrue();
+    }
+
+    private int strengthOf(String username){
+        String stored = userRepository.findByUsername(username).orElseThrow().getPassword();
+        return BCryptCostCalibrator.strengthOf(stored.substring("{bcrypt}".length()));
+    }
+}
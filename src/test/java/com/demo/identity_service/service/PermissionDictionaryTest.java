@@ -0,0 +1,66 @@
+package com.demo.identity_service.service;
+
+import com.demo.identity_service.dto.request.PermissionRequest;
+import com.demo.identity_service.repository.PermissionRepository;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Proxy;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Version lạ trong claim perm: load lại từ điển tối đa 1 lần/giây, các token khác bị từ chối ngay
+ */
+@SpringBootTest
+class PermissionDictionaryTest {
+    @Autowired
+    PermissionRepository permissionRepository;
+
+    @Autowired
+    PermissionService permissionService;
+
+    AtomicInteger loads = new AtomicInteger();
+
+    @Test
+    void unknownVersionsReloadAtMostOncePerInterval() throws Exception {
+        PermissionDictionary permissionDictionary = new PermissionDictionary(countingRepository());
+        permissionDictionary.onStartup();
+        assertThat(loads.get()).isEqualTo(1);
+
+        assertThat(permissionDictionary.decode("unknown1.AQ")).isNull();
+        assertThat(loads.get()).isEqualTo(2);
+
+        // Nhiều token với version lạ ngay sau đó: không truy vấn DB
+        for(int i = 0; i < 100; i++){
+            assertThat(permissionDictionary.decode("forged" + i + ".AQ")).isNull();
+        }
+        assertThat(loads.get()).isEqualTo(2);
+
+        // Permission mới được tạo trên instance khác, token mang version mới tới sau khi hết interval
+        permissionService.create(new PermissionRequest("DICTIONARY_NEW", null));
+        String claim = new PermissionDictionary(permissionRepository).encode(List.of("DICTIONARY_NEW"));
+        Thread.sleep(1100);
+
+        assertThat(permissionDictionary.decode(claim)).containsExactly("DICTIONARY_NEW");
+        assertThat(loads.get()).isEqualTo(3);
+    }
+
+    // PermissionRepository thật, đếm số lần load toàn bộ permission
+    private PermissionRepository countingRepository(){
+        return (PermissionRepository) Proxy.newProxyInstance(PermissionRepository.class.getClassLoader(),
+                new Class<?>[]{PermissionRepository.class},
+                (proxy, method, args) -> {
+                    if(method.getName().equals("findAll")) loads.incrementAndGet();
+                    try {
+                        return method.invoke(permissionRepository, args);
+                    } catch (InvocationTargetException e) {
+                        throw e.getCause();
+                    }
+                });
+    }
+}
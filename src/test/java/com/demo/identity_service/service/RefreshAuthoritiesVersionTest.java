@@ -0,0 +1,94 @@
+package com.demo.identity_service.service;
+
+import com.demo.identity_service.dto.request.AuthenticationRequest;
+import com.demo.identity_service.dto.request.RefreshRequest;
+import com.demo.identity_service.dto.request.UserCreationRequest;
+import com.demo.identity_service.dto.request.UserUpdateRequest;
+import com.demo.identity_service.entity.Role;
+import com.demo.identity_service.repository.RoleRepository;
+import com.nimbusds.jwt.SignedJWT;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.LocalDate;
+import java.util.HashSet;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Refresh dùng lại scope của token cũ khi phiên bản quyền không đổi, load lại user sau khi roles thay đổi
+ */
+@SpringBootTest
+class RefreshAuthoritiesVersionTest {
+    @Autowired
+    AuthenticationService authenticationService;
+
+    @Autowired
+    UserService userService;
+
+    @Autowired
+    RoleRepository roleRepository;
+
+    @Autowired
+    MeterRegistry meterRegistry;
+
+    @Autowired
+    TransactionTemplate transactionTemplate;
+
+    @Test
+    void refreshReloadsUserOnlyAfterAuthoritiesChange() throws Exception {
+        roleRepository.save(Role.builder().name("REFRESH_ROLE").permissions(new HashSet<>()).build());
+        var user = userService.createUser(UserCreationRequest.builder()
+                .username("refresher")
+                .password("password123")
+                .dob(LocalDate.of(1990, 1, 1))
+                .build());
+
+        String token = authenticationService.authenticate(AuthenticationRequest.builder()
+                .username("refresher")
+                .password("password123")
+                .build()).getToken();
+
+        token = refresh(token);
+
+        assertThat(refreshes("reused")).isEqualTo(1);
+        assertThat(refreshes("reloaded")).isZero();
+        assertThat(scopeOf(token)).isEmpty();
+
+        // toUserResponse đọc Role.permissions (lazy), trong request thật được mở bởi open-in-view
+        transactionTemplate.executeWithoutResult(status -> userService.updateUser(user.getId().toString(),
+                UserUpdateRequest.builder()
+                        .password("password123")
+                        .roles(List.of("REFRESH_ROLE"))
+                        .build()));
+
+        token = refresh(token);
+
+        assertThat(refreshes("reloaded")).isEqualTo(1);
+        assertThat(scopeOf(token)).isEqualTo("ROLE_REFRESH_ROLE");
+
+        // Quyền không đổi nữa: lần refresh tiếp theo lại dùng scope của token
+        token = refresh(token);
+
+        assertThat(refreshes("reused")).isEqualTo(2);
+        assertThat(refreshes("reloaded")).isEqualTo(1);
+        assertThat(scopeOf(token)).isEqualTo("ROLE_REFRESH_ROLE");
+    }
+
+    private String refresh(String token) throws Exception {
+        return authenticationService.refreshToken(RefreshRequest.builder().token(token).build()).getToken();
+    }
+
+    // identity.auth.refresh.scope: refresh dùng lại scope (reused) hoặc load lại user (reloaded)
+    private double refreshes(String result){
+        return meterRegistry.get("identity.auth.refresh.scope").tag("result", result).counter().count();
+    }
+
+    private static String scopeOf(String token) throws Exception {
+        return SignedJWT.parse(token).getJWTClaimsSet().getStringClaim("scope");
+    }
+}
@@ -0,0 +1,76 @@
+package com.demo.identity_service.service;
+
+import com.demo.identity_service.entity.InvalidatedToken;
+import com.demo.identity_service.repository.InvalidatedTokenRepository;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+
+import java.time.Instant;
+import java.util.Date;
+import java.util.Set;
+import java.util.UUID;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Hai RevokedTokenFilter dùng chung một DB, giống hai instance của service
+ * - Token thu hồi trên instance A bị instance B từ chối sau một lần sync
+ * - Filter lâu không sync không được tin, lookup xuống DB
+ */
+@SpringBootTest
+class RevokedTokenFilterTest {
+    @Autowired
+    InvalidatedTokenRepository invalidatedTokenRepository;
+
+    @Test
+    void revocationOnOneInstanceIsSeenByAnotherAfterSync(){
+        RevokedTokenFilter instanceA = filter(60000);
+        RevokedTokenFilter instanceB = filter(60000);
+        instanceA.rebuild();
+        instanceB.rebuild();
+
+        String jwtId = revoke(instanceA);
+
+        assertThat(instanceA.isRevoked(jwtId)).isTrue();
+        // Trước lần sync tiếp theo (tối đa sync-interval), filter của B chưa biết jti này
+        assertThat(instanceB.isRevoked(jwtId)).isFalse();
+
+        instanceB.sync();
+
+        assertThat(instanceB.isRevoked(jwtId)).isTrue();
+        assertThat(instanceB.findRevoked(Set.of(jwtId, UUID.randomUUID().toString()))).containsExactly(jwtId);
+    }
+
+    @Test
+    void staleFilterFallsBackToDatabase() throws Exception {
+        RevokedTokenFilter instanceA = filter(60000);
+        RevokedTokenFilter instanceB = filter(1);
+        instanceA.rebuild();
+        instanceB.rebuild();
+
+        String jwtId = revoke(instanceA);
+        Thread.sleep(10);
+
+        // B chưa sync lần nào kể từ khi A thu hồi token, nhưng filter đã quá max-staleness
+        assertThat(instanceB.isRevoked(jwtId)).isTrue();
+    }
+
+    private RevokedTokenFilter filter(long maxStalenessMillis){
+        return new RevokedTokenFilter(invalidatedTokenRepository, new SimpleMeterRegistry(),
+                1000, 0.01, 120, 10000, maxStalenessMillis);
+    }
+
+    // Logout trên một instance: ghi dòng xuống DB và đánh dấu trong filter của instance đó
+    private String revoke(RevokedTokenFilter filter){
+        String jwtId = UUID.randomUUID().toString();
+        invalidatedTokenRepository.save(InvalidatedToken.builder()
+                .id(jwtId)
+                .expirationTime(Date.from(Instant.now().plusSeconds(60)))
+                .revokedAt(new Date())
+                .build());
+        filter.markRevoked(jwtId);
+        return jwtId;
+    }
+}
@@ -0,0 +1,128 @@
+package com.demo.identity_service.service;
+
+import com.demo.identity_service.dto.request.AuthenticationRequest;
+import com.demo.identity_service.dto.request.PermissionRequest;
+import com.demo.identity_service.dto.request.RoleRequest;
+import com.demo.identity_service.dto.request.UserCreationRequest;
+import com.demo.identity_service.dto.request.UserUpdateRequest;
+import com.demo.identity_service.repository.AuthoritiesVersionRepository;
+import com.demo.identity_service.repository.PermissionRepository;
+import com.demo.identity_service.repository.RoleRepository;
+import com.nimbusds.jwt.SignedJWT;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.LocalDate;
+import java.util.List;
+import java.util.Set;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Permission của role được cache giữa các lần đăng nhập và bị xóa khi role thay đổi,
+ * trên instance này hoặc trên instance khác (qua AuthoritiesVersionStore.reload())
+ */
+@SpringBootTest(properties = "jwt.valid-duration=3600")
+class RoleScopeCacheTest {
+    @Autowired
+    AuthenticationService authenticationService;
+
+    @Autowired
+    UserService userService;
+
+    @Autowired
+    RoleService roleService;
+
+    @Autowired
+    PermissionService permissionService;
+
+    @Autowired
+    RoleScopeCache roleScopeCache;
+
+    @Autowired
+    AuthoritiesVersionStore authoritiesVersionStore;
+
+    @Autowired
+    RoleRepository roleRepository;
+
+    @Autowired
+    PermissionRepository permissionRepository;
+
+    @Autowired
+    AuthoritiesVersionRepository authoritiesVersionRepository;
+
+    @Autowired
+    TransactionTemplate transactionTemplate;
+
+    @Test
+    void changedRolePermissionsAppearOnNextLogin() throws Exception {
+        permissionService.create(new PermissionRequest("SCOPE_CACHE_READ", null));
+        permissionService.create(new PermissionRequest("SCOPE_CACHE_WRITE", null));
+        transactionTemplate.executeWithoutResult(status ->
+                roleService.create(new RoleRequest("SCOPE_CACHE_ROLE", null, Set.of("SCOPE_CACHE_READ"))));
+
+        createUser("scopecache", "SCOPE_CACHE_ROLE");
+
+        assertThat(scope("scopecache")).containsExactlyInAnyOrder("ROLE_SCOPE_CACHE_ROLE", "SCOPE_CACHE_READ");
+
+        // Lần đăng nhập sau dùng đoạn scope đã cache
+        long generation = roleScopeCache.generation();
+        assertThat(scope("scopecache")).containsExactlyInAnyOrder("ROLE_SCOPE_CACHE_ROLE", "SCOPE_CACHE_READ");
+        assertThat(roleScopeCache.generation()).isEqualTo(generation);
+
+        transactionTemplate.executeWithoutResult(status -> roleService.create(new RoleRequest(
+                "SCOPE_CACHE_ROLE", null, Set.of("SCOPE_CACHE_READ", "SCOPE_CACHE_WRITE"))));
+
+        assertThat(roleScopeCache.generation()).isGreaterThan(generation);
+        assertThat(scope("scopecache"))
+                .containsExactlyInAnyOrder("ROLE_SCOPE_CACHE_ROLE", "SCOPE_CACHE_READ", "SCOPE_CACHE_WRITE");
+    }
+
+    @Test
+    void rolePermissionsChangedOnAnotherInstanceAppearAfterVersionReload() throws Exception {
+        permissionService.create(new PermissionRequest("REMOTE_SCOPE_READ", null));
+        permissionService.create(new PermissionRequest("REMOTE_SCOPE_WRITE", null));
+        transactionTemplate.executeWithoutResult(status ->
+                roleService.create(new RoleRequest("REMOTE_SCOPE_ROLE", null, Set.of("REMOTE_SCOPE_READ"))));
+        createUser("remotescope", "REMOTE_SCOPE_ROLE");
+
+        assertThat(scope("remotescope")).containsExactlyInAnyOrder("ROLE_REMOTE_SCOPE_ROLE", "REMOTE_SCOPE_READ");
+
+        // Instance khác thêm permission cho role và tăng version role/permission, không chạm tới cache của instance này
+        transactionTemplate.executeWithoutResult(status -> roleRepository.findById("REMOTE_SCOPE_ROLE").orElseThrow()
+                .getPermissions().add(permissionRepository.findById("REMOTE_SCOPE_WRITE").orElseThrow()));
+        authoritiesVersionRepository.incrementVersion("*");
+
+        assertThat(scope("remotescope")).containsExactlyInAnyOrder("ROLE_REMOTE_SCOPE_ROLE", "REMOTE_SCOPE_READ");
+
+        // Lần load version định kỳ thấy version role/permission tăng
+        authoritiesVersionStore.reload();
+
+        assertThat(scope("remotescope"))
+                .containsExactlyInAnyOrder("ROLE_REMOTE_SCOPE_ROLE", "REMOTE_SCOPE_READ", "REMOTE_SCOPE_WRITE");
+    }
+
+    private void createUser(String username, String role){
+        var user = userService.createUser(UserCreationRequest.builder()
+                .username(username)
+                .password("password123")
+                .dob(LocalDate.of(1990, 1, 1))
+                .build());
+        // toUserResponse đọc Role.permissions (lazy), trong request thật được mở bởi open-in-view
+        transactionTemplate.executeWithoutResult(status -> userService.updateUser(user.getId().toString(),
+                UserUpdateRequest.builder()
+                        .password("password123")
+                        .roles(List.of(role))
+                        .build()));
+    }
+
+    private List<String> scope(String username) throws Exception {
+        String token = authenticationService.authenticate(AuthenticationRequest.builder()
+                .username(username)
+                .password("password123")
+                .build()).getToken();
+        return List.of(SignedJWT.parse(token).getJWTClaimsSet().getStringClaim("scope").split(" "));
+    }
+}
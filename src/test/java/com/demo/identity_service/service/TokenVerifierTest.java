@@ -0,0 +1,120 @@
+package com.demo.identity_service.service;
+
+import com.demo.identity_service.configuration.JwtKeyRing;
+import com.demo.identity_service.dto.request.AuthenticationRequest;
+import com.demo.identity_service.dto.request.LogOutRequest;
+import com.demo.identity_service.dto.request.UserCreationRequest;
+import com.demo.identity_service.exception.InvalidTokenException;
+import com.nimbusds.jose.JWSAlgorithm;
+import com.nimbusds.jose.JWSHeader;
+import com.nimbusds.jwt.JWTClaimsSet;
+import com.nimbusds.jwt.SignedJWT;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+
+import java.text.ParseException;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.util.Date;
+import java.util.UUID;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+/**
+ * Các trường hợp token bị từ chối trong pipeline parse một lần của TokenVerifier
+ */
+@SpringBootTest(properties = {
+        "jwt.valid-duration=3600",
+        "jwt.refreshable-duration=7200"
+})
+class TokenVerifierTest {
+    @Autowired
+    TokenVerifier tokenVerifier;
+
+    @Autowired
+    JwtKeyRing jwtKeyRing;
+
+    @Autowired
+    AuthenticationService authenticationService;
+
+    @Autowired
+    UserService userService;
+
+    @Test
+    void acceptsValidTokenAndExposesParsedClaims() throws Exception {
+        String token = sign(jwtKeyRing.header(), Instant.now().minusSeconds(10), Instant.now().plusSeconds(60));
+
+        VerifiedToken verifiedToken = tokenVerifier.verify(token, false);
+
+        assertThat(verifiedToken.claims().getSubject()).isEqualTo("verifier");
+        assertThat(verifiedToken.header().getKeyID()).isEqualTo(jwtKeyRing.header().getKeyID());
+    }
+
+    @Test
+    void rejectsTokenWithReason() throws Exception {
+        String valid = sign(jwtKeyRing.header(), Instant.now().minusSeconds(10), Instant.now().plusSeconds(60));
+        int index = valid.lastIndexOf('.') + 10;
+        String tampered = valid.substring(0, index)
+                + (valid.charAt(index) == 'A' ? 'B' : 'A')
+                + valid.substring(index + 1);
+
+        assertReason(tampered, InvalidTokenException.Reason.BAD_SIGNATURE);
+        assertReason(sign(new JWSHeader.Builder(JWSAlgorithm.HS512).keyID("unknown").build(),
+                Instant.now().minusSeconds(10), Instant.now().plusSeconds(60)), InvalidTokenException.Reason.UNKNOWN_KEY);
+        assertReason(sign(jwtKeyRing.header(), Instant.now().minusSeconds(120), Instant.now().minusSeconds(60)),
+                InvalidTokenException.Reason.EXPIRED);
+
+        assertThatThrownBy(() -> tokenVerifier.verify("not-a-jwt", false)).isInstanceOf(ParseException.class);
+    }
+
+    @Test
+    void refreshUsesIssueTimePlusRefreshableDuration() throws Exception {
+        // Đã hết hạn truy cập nhưng vẫn trong refreshable-duration
+        String expired = sign(jwtKeyRing.header(), Instant.now().minusSeconds(3600), Instant.now().minusSeconds(60));
+        assertThat(tokenVerifier.verify(expired, true).claims().getSubject()).isEqualTo("verifier");
+
+        String tooOld = sign(jwtKeyRing.header(), Instant.now().minusSeconds(7300), Instant.now().minusSeconds(3700));
+        assertThatThrownBy(() -> tokenVerifier.verify(tooOld, true))
+                .isInstanceOf(InvalidTokenException.class)
+                .extracting(e -> ((InvalidTokenException) e).getReason())
+                .isEqualTo(InvalidTokenException.Reason.EXPIRED);
+    }
+
+    @Test
+    void rejectsLoggedOutToken() throws Exception {
+        userService.createUser(UserCreationRequest.builder()
+                .username("verifierrevoked")
+                .password("password123")
+                .dob(LocalDate.of(1990, 1, 1))
+                .build());
+        String token = authenticationService.authenticate(AuthenticationRequest.builder()
+                .username("verifierrevoked")
+                .password("password123")
+                .build()).getToken();
+
+        tokenVerifier.verify(token, false);
+        authenticationService.logout(new LogOutRequest(token));
+
+        assertReason(token, InvalidTokenException.Reason.REVOKED);
+    }
+
+    private void assertReason(String token, InvalidTokenException.Reason reason){
+        assertThatThrownBy(() -> tokenVerifier.verify(token, false))
+                .isInstanceOf(InvalidTokenException.class)
+                .extracting(e -> ((InvalidTokenException) e).getReason())
+                .isEqualTo(reason);
+    }
+
+    private String sign(JWSHeader header, Instant issuedAt, Instant expiresAt) throws Exception {
+        SignedJWT jwt = new SignedJWT(header, new JWTClaimsSet.Builder()
+                .subject("verifier")
+                .issueTime(Date.from(issuedAt))
+                .expirationTime(Date.from(expiresAt))
+                .jwtID(UUID.randomUUID().toString())
+                .build());
+        jwt.sign(jwtKeyRing.signer());
+        return jwt.serialize();
+    }
+}
@@ -0,0 +1,144 @@
+package com.demo.identity_service.service;
+
+import com.demo.identity_service.dto.request.UserCreationRequest;
+import com.demo.identity_service.dto.response.UserImportResponse;
+import com.demo.identity_service.dto.response.UserImportResult;
+import com.demo.identity_service.exception.ErrorCode;
+import com.demo.identity_service.mapper.UserMapper;
+import com.demo.identity_service.repository.UserRepository;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import jakarta.persistence.EntityManager;
+import jakarta.validation.Validator;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.io.ByteArrayInputStream;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Proxy;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDate;
+import java.util.Set;
+import java.util.UUID;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Import NDJSON: dòng lỗi hoặc trùng username được báo theo từng dòng, các dòng còn lại vẫn được tạo
+ */
+@SpringBootTest
+class UserImporterTest {
+    @Autowired
+    UserImporter userImporter;
+
+    @Autowired
+    UserService userService;
+
+    @Autowired
+    UserRepository userRepository;
+
+    @Autowired
+    UserMapper userMapper;
+
+    @Autowired
+    PasswordHasher passwordHasher;
+
+    @Autowired
+    Validator validator;
+
+    @Autowired
+    EntityManager entityManager;
+
+    @Autowired
+    TransactionTemplate transactionTemplate;
+
+    @Autowired
+    ObjectMapper objectMapper;
+
+    @Test
+    void reportsDuplicatesPerLine() throws Exception {
+        createUser("importexisting");
+
+        UserImportResponse response = userImporter.importUsers(ndjson(
+                line("importfirst"),
+                line("importexisting"),
+                "not-json",
+                line("importfirst"),
+                "",
+                "{\"username\":\"importshort\",\"password\":\"short\"}",
+                line("importsecond")));
+
+        assertThat(response.getTotal()).isEqualTo(6);
+        assertThat(response.getCreated()).isEqualTo(2);
+        assertThat(response.getFailed()).isEqualTo(4);
+
+        // Dòng trống không có kết quả, số dòng vẫn tính theo file
+        assertThat(response.getResults()).extracting(UserImportResult::getLine)
+                .containsExactly(1, 2, 3, 4, 6, 7);
+        assertThat(response.getResults()).extracting(UserImportResult::getCode)
+                .containsExactly(1000,
+                        ErrorCode.USER_EXISTED.getCode(),
+                        ErrorCode.INVALID_RECORD.getCode(),
+                        ErrorCode.USER_EXISTED.getCode(),
+                        ErrorCode.PASSWORD_INVALID.getCode(),
+                        1000);
+
+        assertThat(userRepository.findExistingUsernames(Set.of("importfirst", "importsecond", "importshort")))
+                .containsExactlyInAnyOrder("importfirst", "importsecond");
+    }
+
+    @Test
+    void fallsBackToRowByRowInsertWhenBatchHitsDuplicate() throws Exception {
+        createUser("importraced");
+
+        // Request khác tạo "importraced" sau khi import đã kiểm tra trùng: batch insert vi phạm unique index
+        UserImporter racingImporter = new UserImporter(repositoryMissingExistingUsernames(), userMapper,
+                passwordHasher, validator, entityManager, transactionTemplate, objectMapper, 500);
+
+        UserImportResponse response = racingImporter.importUsers(ndjson(
+                line("importbefore"),
+                line("importraced"),
+                line("importafter")));
+
+        assertThat(response.getCreated()).isEqualTo(2);
+        assertThat(response.getResults()).extracting(UserImportResult::getCode)
+                .containsExactly(1000, ErrorCode.USER_EXISTED.getCode(), 1000);
+        assertThat(response.getResults().get(1).getId()).isNull();
+
+        assertThat(userRepository.findExistingUsernames(Set.of("importbefore", "importafter")))
+                .containsExactlyInAnyOrder("importbefore", "importafter");
+        assertThat(userRepository.findById(UUID.fromString(response.getResults().get(0).getId())))
+                .isPresent();
+    }
+
+    // UserRepository thật, riêng findExistingUsernames không thấy user nào
+    private UserRepository repositoryMissingExistingUsernames(){
+        return (UserRepository) Proxy.newProxyInstance(UserRepository.class.getClassLoader(),
+                new Class<?>[]{UserRepository.class},
+                (proxy, method, args) -> {
+                    if(method.getName().equals("findExistingUsernames")) return Set.of();
+                    try {
+                        return method.invoke(userRepository, args);
+                    } catch (InvocationTargetException e) {
+                        throw e.getCause();
+                    }
+                });
+    }
+
+    private void createUser(String username){
+        userService.createUser(UserCreationRequest.builder()
+                .username(username)
+                .password("password123")
+                .dob(LocalDate.of(1990, 1, 1))
+                .build());
+    }
+
+    private static String line(String username){
+        return "{\"username\":\"" + username + "\",\"password\":\"password123\",\"dob\":\"1990-01-01\"}";
+    }
+
+    private static ByteArrayInputStream ndjson(String... lines){
+        return new ByteArrayInputStream(String.join("\n", lines).getBytes(StandardCharsets.UTF_8));
+    }
+}